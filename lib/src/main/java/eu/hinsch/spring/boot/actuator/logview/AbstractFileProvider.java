@@ -1,8 +1,12 @@
 package eu.hinsch.spring.boot.actuator.logview;
 
+import org.apache.commons.compress.compressors.xz.XZUtils;
 import org.ocpsoft.prettytime.PrettyTime;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 
 /**
 * Created by lh on 28/02/15.
@@ -10,8 +14,40 @@ import java.nio.file.Path;
 public abstract class AbstractFileProvider implements FileProvider {
     protected static final PrettyTime prettyTime = new PrettyTime();
 
+    /**
+     * An archive is versioned as a whole, so an entry's version consists of the archive's attributes and its name.
+     */
+    @Override
+    public ContentVersion contentVersion(Path folder, String filename) throws IOException {
+        return ContentVersion.of(Files.readAttributes(folder, BasicFileAttributes.class), filename);
+    }
+
     protected boolean isArchive(Path path) {
-        return isZip(path) || isTarGz(path);
+        return isZip(path) || isTarGz(path) || isCompressed(path);
+    }
+
+    /**
+     * Like {@link #isArchive(Path)} for already read attributes, without accessing the file system again.
+     */
+    protected boolean isArchive(Path path, BasicFileAttributes attributes) {
+        if (attributes.isDirectory()) {
+            return false;
+        }
+        String filename = path.getFileName().toString();
+        return filename.endsWith(".zip") || filename.endsWith(".gz") || filename.endsWith(".bz2")
+                || filename.endsWith(".xz") && XZUtils.isXZCompressionAvailable();
+    }
+
+    /**
+     * @return whether the path is a single compressed file, like a log rotated with compression
+     */
+    protected boolean isCompressed(Path path) {
+        if (path.toFile().isDirectory() || isTarGz(path)) {
+            return false;
+        }
+        String filename = path.getFileName().toString();
+        return filename.endsWith(".gz") || filename.endsWith(".bz2")
+                || filename.endsWith(".xz") && XZUtils.isXZCompressionAvailable();
     }
 
     protected boolean isTarGz(Path path) {
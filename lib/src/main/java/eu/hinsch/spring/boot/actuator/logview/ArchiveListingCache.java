@@ -0,0 +1,255 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of archive listings, so an archive that has to be decompressed to list its entries is only read once.
+ * <p>
+ * Listings are cached by path, size, modification time and file key. The least recently used listings are evicted
+ * when more than the maximum number of archives or entries are cached. Optionally every listing is also written to a
+ * small sidecar file in a separate directory, from which it is loaded after a restart.
+ */
+public class ArchiveListingCache {
+
+    public static final int DEFAULT_MAX_ARCHIVES = 64;
+    public static final int DEFAULT_MAX_ENTRIES = 100000;
+
+    private static final int MAGIC = 0x4c564c31;
+    private static final String SUFFIX = ".listing";
+
+    /**
+     * Reads the listing of an archive.
+     */
+    public interface Loader {
+        List<FileEntry> load() throws IOException;
+    }
+
+    private final int maxArchives;
+    private final int maxEntries;
+    private final Path sidecarDirectory;
+    // in access order, guarded by itself
+    private final LinkedHashMap<Path, Listing> listings = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Path, Object> locks = new ConcurrentHashMap<>();
+    private int cachedEntries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong sidecarHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param sidecarDirectory directory to persist listings in, or null to only keep them in memory
+     */
+    public ArchiveListingCache(int maxArchives, int maxEntries, Path sidecarDirectory) {
+        this.maxArchives = maxArchives;
+        this.maxEntries = maxEntries;
+        this.sidecarDirectory = sidecarDirectory;
+    }
+
+    /**
+     * @return copies of the cached entries, loaded if the archive is not cached or changed since
+     */
+    public List<FileEntry> getFileEntries(Path archive, Loader loader) throws IOException {
+        Path absoluteArchive = archive.toAbsolutePath();
+        synchronized (locks.computeIfAbsent(absoluteArchive, key -> new Object())) {
+            BasicFileAttributes attributes = Files.readAttributes(absoluteArchive, BasicFileAttributes.class);
+            Listing listing;
+            synchronized (listings) {
+                listing = listings.get(absoluteArchive);
+            }
+            if (listing != null && listing.matches(attributes)) {
+                hits.incrementAndGet();
+                return listing.copy();
+            }
+            listing = readSidecar(absoluteArchive, attributes);
+            if (listing != null) {
+                sidecarHits.incrementAndGet();
+            }
+            else {
+                misses.incrementAndGet();
+                listing = new Listing(attributes, loader.load());
+                writeSidecar(absoluteArchive, listing);
+            }
+            put(absoluteArchive, listing);
+            return listing.copy();
+        }
+    }
+
+    private void put(Path archive, Listing listing) {
+        synchronized (listings) {
+            Listing replaced = listings.put(archive, listing);
+            if (replaced != null) {
+                cachedEntries -= replaced.entries.size();
+            }
+            cachedEntries += listing.entries.size();
+            Iterator<Listing> iterator = listings.values().iterator();
+            while ((listings.size() > maxArchives || cachedEntries > maxEntries) && iterator.hasNext()) {
+                Listing eldest = iterator.next();
+                if (eldest == listing) {
+                    // a single listing larger than the limit is kept until the next one is cached
+                    break;
+                }
+                iterator.remove();
+                cachedEntries -= eldest.entries.size();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return number of cached archives and entries, hits (in memory and from sidecar files), misses and evictions
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        synchronized (listings) {
+            statistics.put("archives", listings.size());
+            statistics.put("entries", cachedEntries);
+        }
+        statistics.put("hits", hits.get());
+        statistics.put("sidecarHits", sidecarHits.get());
+        statistics.put("misses", misses.get());
+        statistics.put("evictions", evictions.get());
+        return statistics;
+    }
+
+    private Listing readSidecar(Path archive, BasicFileAttributes attributes) {
+        if (sidecarDirectory == null) {
+            return null;
+        }
+        Path sidecar = sidecar(archive);
+        if (!Files.exists(sidecar)) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar)))) {
+            if (input.readInt() != MAGIC || !input.readUTF().equals(archive.toString())) {
+                return null;
+            }
+            long size = input.readLong();
+            long lastModified = input.readLong();
+            String fileKey = input.readUTF();
+            if (size != attributes.size() || lastModified != attributes.lastModifiedTime().toMillis()
+                    || !fileKey.equals(fileKey(attributes))) {
+                return null;
+            }
+            int count = input.readInt();
+            List<FileEntry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                FileEntry entry = new FileEntry();
+                entry.setFilename(input.readUTF());
+                entry.setDisplayFilename(input.readUTF());
+                entry.setSize(input.readLong());
+                entry.setModified(FileTime.fromMillis(input.readLong()));
+                entry.setFileType(FileType.valueOf(input.readUTF()));
+                entries.add(entry);
+            }
+            return new Listing(attributes, entries);
+        } catch (IOException | IllegalArgumentException e) {
+            // unreadable sidecar, the archive is listed again and the sidecar replaced
+            return null;
+        }
+    }
+
+    private void writeSidecar(Path archive, Listing listing) {
+        if (sidecarDirectory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(sidecarDirectory);
+            Path sidecar = sidecar(archive);
+            Path temporary = Files.createTempFile(sidecarDirectory, "listing", ".tmp");
+            try {
+                try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                    output.writeInt(MAGIC);
+                    output.writeUTF(archive.toString());
+                    output.writeLong(listing.size);
+                    output.writeLong(listing.lastModified);
+                    output.writeUTF(listing.fileKey);
+                    output.writeInt(listing.entries.size());
+                    for (FileEntry entry : listing.entries) {
+                        output.writeUTF(entry.getFilename());
+                        output.writeUTF(entry.getDisplayFilename());
+                        output.writeLong(entry.getSize());
+                        output.writeLong(entry.getModified().toMillis());
+                        output.writeUTF(entry.getFileType().name());
+                    }
+                }
+                Files.move(temporary, sidecar, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            // sidecar directory not writable or full, the listing is only kept in memory
+        }
+    }
+
+    private Path sidecar(Path archive) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(archive.toString().getBytes("UTF-8"));
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest) {
+                name.append(String.format("%02x", b));
+            }
+            return sidecarDirectory.resolve(name + SUFFIX);
+        } catch (NoSuchAlgorithmException | IOException e) {
+            throw new IllegalStateException("unable to create sidecar file name", e);
+        }
+    }
+
+    private static String fileKey(BasicFileAttributes attributes) {
+        return Objects.toString(attributes.fileKey(), "");
+    }
+
+    private static class Listing {
+        private final long size;
+        private final long lastModified;
+        private final String fileKey;
+        private final List<FileEntry> entries;
+
+        Listing(BasicFileAttributes attributes, List<FileEntry> entries) {
+            this.size = attributes.size();
+            this.lastModified = attributes.lastModifiedTime().toMillis();
+            this.fileKey = fileKey(attributes);
+            this.entries = entries;
+        }
+
+        boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size() && lastModified == attributes.lastModifiedTime().toMillis()
+                    && fileKey.equals(fileKey(attributes));
+        }
+
+        /**
+         * @return copies of the entries, without the relative modification time (which changes while cached)
+         */
+        List<FileEntry> copy() {
+            List<FileEntry> copies = new ArrayList<>(entries.size());
+            for (FileEntry entry : entries) {
+                FileEntry copy = new FileEntry();
+                copy.setFilename(entry.getFilename());
+                copy.setDisplayFilename(entry.getDisplayFilename());
+                copy.setSize(entry.getSize());
+                copy.setModified(entry.getModified());
+                copy.setFileType(entry.getFileType());
+                copies.add(copy);
+            }
+            return copies;
+        }
+    }
+}
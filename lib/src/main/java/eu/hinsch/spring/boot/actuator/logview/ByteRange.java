@@ -0,0 +1,84 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A byte range of a {@code Range} request header, resolved against the length of the requested content.
+ */
+public class ByteRange {
+
+    private static final String BYTES_UNIT = "bytes=";
+    private static final int MAX_RANGES = 100;
+
+    private final long offset;
+    private final long length;
+
+    ByteRange(long offset, long length) {
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Parses a header like {@code bytes=0-499,1000-,-500}.
+     *
+     * @param contentLength length of the complete content
+     * @return the satisfiable ranges (empty if none is), or null if the header is invalid and has to be ignored
+     */
+    public static List<ByteRange> parse(String header, long contentLength) {
+        if (!header.startsWith(BYTES_UNIT)) {
+            return null;
+        }
+        String[] specs = header.substring(BYTES_UNIT.length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<ByteRange> ranges = new ArrayList<>();
+        for (String spec : specs) {
+            String trimmed = spec.trim();
+            int dash = trimmed.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                String first = trimmed.substring(0, dash);
+                String last = trimmed.substring(dash + 1);
+                if (first.isEmpty()) {
+                    // suffix range with the last n bytes
+                    long suffixLength = Long.parseLong(last);
+                    if (suffixLength > 0 && contentLength > 0) {
+                        long start = Math.max(0, contentLength - suffixLength);
+                        ranges.add(new ByteRange(start, contentLength - start));
+                    }
+                    continue;
+                }
+                long start = Long.parseLong(first);
+                long end = last.isEmpty() ? contentLength - 1 : Math.min(Long.parseLong(last), contentLength - 1);
+                if (start < 0 || !last.isEmpty() && Long.parseLong(last) < start) {
+                    return null;
+                }
+                if (start < contentLength) {
+                    ranges.add(new ByteRange(start, end - start + 1));
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return ranges;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return value of the {@code Content-Range} header for this range
+     */
+    public String contentRange(long contentLength) {
+        return "bytes " + offset + "-" + (offset + length - 1) + "/" + contentLength;
+    }
+}
@@ -0,0 +1,236 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * Single compressed files (.gz, .bz2 and, with XZ for Java on the classpath, .xz), as written by logback when rolling
+ * over with compression. The file is shown like an archive with a single entry, named like the file without the
+ * compression suffix, and is decompressed as a stream for viewing, tailing and searching. Concatenated compressed
+ * files (several gzip members or bzip2 streams) are read as one.
+ */
+public class CompressedFileProvider extends AbstractFileProvider {
+
+    public static final int MAX_TAIL_BYTES = 64 * 1024 * 1024;
+    public static final int MAX_TAIL_LINES = 100000;
+    public static final int MAX_LINE_BYTES = 64 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Override
+    public boolean canHandle(Path folder) {
+        return isCompressed(folder);
+    }
+
+    /**
+     * The size of the entry is the compressed size, the uncompressed size is not known without decompressing.
+     */
+    @Override
+    public List<FileEntry> getFileEntries(Path folder) throws IOException {
+        FileEntry fileEntry = new FileEntry();
+        try {
+            fileEntry.setFilename(URLEncoder.encode(entryName(folder), "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("encoding error", e);
+        }
+        fileEntry.setDisplayFilename(entryName(folder));
+        fileEntry.setSize(Files.size(folder));
+        fileEntry.setFileType(FileType.FILE);
+        fileEntry.setModified(Files.getLastModifiedTime(folder));
+        fileEntry.setModifiedPretty(prettyTime.format(new Date(fileEntry.getModified().toMillis())));
+        return singletonList(fileEntry);
+    }
+
+    @Override
+    public void streamContent(Path folder, String filename, OutputStream stream) throws IOException {
+        if (!filename.equals(entryName(folder))) {
+            return;
+        }
+        try (InputStream inputStream = decompress(folder)) {
+            IOUtils.copyLarge(inputStream, stream, new byte[BUFFER_SIZE]);
+        }
+    }
+
+    @Override
+    public Path gzipFile(Path folder, String filename) {
+        return folder.getFileName().toString().endsWith(".gz") && filename.equals(entryName(folder)) ? folder : null;
+    }
+
+    /**
+     * Keeps the last lines in a ring while decompressing, a line break at the very end does not start another line.
+     * At most {@link #MAX_TAIL_LINES} lines can be tailed; lines are cut off after {@link #MAX_LINE_BYTES} bytes, and
+     * the oldest lines are dropped when the kept lines exceed {@link #MAX_TAIL_BYTES}.
+     */
+    @Override
+    public void tailContent(Path folder, String filename, OutputStream stream, int lines) throws IOException {
+        if (lines > MAX_TAIL_LINES) {
+            throw new IllegalArgumentException("at most " + MAX_TAIL_LINES + " lines of compressed files can be tailed");
+        }
+        if (!filename.equals(entryName(folder)) || lines <= 0) {
+            return;
+        }
+        LineRing ring = new LineRing(lines);
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream inputStream = decompress(folder)) {
+            int read;
+            while ((read = inputStream.read(buffer)) > 0) {
+                int lineStart = 0;
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        appendToLine(line, buffer, lineStart, i - lineStart);
+                        line.write('\n');
+                        ring.add(line.toByteArray());
+                        line.reset();
+                        lineStart = i + 1;
+                    }
+                }
+                appendToLine(line, buffer, lineStart, read - lineStart);
+            }
+        }
+        if (line.size() > 0) {
+            ring.add(line.toByteArray());
+        }
+        ring.writeTo(stream);
+    }
+
+    private static void appendToLine(ByteArrayOutputStream line, byte[] buffer, int offset, int length) {
+        // the rest of an overlong line is skipped
+        line.write(buffer, offset, Math.min(length, MAX_LINE_BYTES - line.size()));
+    }
+
+    /**
+     * The last lines, bounded by count and by their total size.
+     */
+    private static class LineRing {
+        private final byte[][] lines;
+        private int next;
+        private int count;
+        private long bytes;
+
+        LineRing(int capacity) {
+            lines = new byte[capacity][];
+        }
+
+        void add(byte[] line) {
+            if (count == lines.length) {
+                dropOldest();
+            }
+            lines[next] = line;
+            next = (next + 1) % lines.length;
+            count++;
+            bytes += line.length;
+            while (bytes > MAX_TAIL_BYTES && count > 1) {
+                dropOldest();
+            }
+        }
+
+        private void dropOldest() {
+            int oldest = (next - count + lines.length) % lines.length;
+            bytes -= lines[oldest].length;
+            lines[oldest] = null;
+            count--;
+        }
+
+        void writeTo(OutputStream stream) throws IOException {
+            for (int i = 0; i < count; i++) {
+                stream.write(lines[(next - count + i + lines.length) % lines.length]);
+            }
+        }
+    }
+
+    /**
+     * Keeps the last bytes in a ring while decompressing, at most {@link #MAX_TAIL_BYTES}.
+     */
+    @Override
+    public void tailBytes(Path folder, String filename, OutputStream stream, long bytes) throws IOException {
+        if (bytes > MAX_TAIL_BYTES) {
+            throw new IllegalArgumentException("at most " + MAX_TAIL_BYTES + " bytes of compressed files can be tailed");
+        }
+        if (!filename.equals(entryName(folder)) || bytes <= 0) {
+            return;
+        }
+        byte[] ring = new byte[(int) bytes];
+        long total = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream inputStream = decompress(folder)) {
+            int read;
+            while ((read = inputStream.read(buffer)) > 0) {
+                for (int copied = 0; copied < read; ) {
+                    int position = (int) (total % ring.length);
+                    int length = Math.min(read - copied, ring.length - position);
+                    System.arraycopy(buffer, copied, ring, position, length);
+                    copied += length;
+                    total += length;
+                }
+            }
+        }
+        if (total <= ring.length) {
+            stream.write(ring, 0, (int) total);
+        }
+        else {
+            int oldest = (int) (total % ring.length);
+            stream.write(ring, oldest, ring.length - oldest);
+            stream.write(ring, 0, oldest);
+        }
+    }
+
+    @Override
+    public List<OrderedParallelSearch.Task> searchTasks(Path folder, SearchContext search) throws IOException {
+        return singletonList(output -> searchEntry(folder, search, output));
+    }
+
+    private void searchEntry(Path folder, SearchContext search, OutputStream output) throws IOException {
+        String name = entryName(folder);
+        if (search.skipsArchive(folder) || !search.includes(name)) {
+            return;
+        }
+        String displayName = search.displayName(folder, name);
+        long start = search.startOffset(displayName);
+        if (start < 0 || search.isDone()) {
+            return;
+        }
+        try (InputStream inputStream = decompress(folder)) {
+            IOUtils.skipFully(inputStream, start);
+            search.searchStream(inputStream, start, displayName, output);
+        }
+    }
+
+    private static String entryName(Path file) {
+        String filename = file.getFileName().toString();
+        return filename.substring(0, filename.lastIndexOf('.'));
+    }
+
+    private static InputStream decompress(Path file) throws IOException {
+        InputStream inputStream = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+        String filename = file.getFileName().toString();
+        try {
+            if (filename.endsWith(".gz")) {
+                return new GzipCompressorInputStream(inputStream, true);
+            }
+            if (filename.endsWith(".bz2")) {
+                return new BZip2CompressorInputStream(inputStream, true);
+            }
+            return new XZCompressorInputStream(inputStream, true);
+        } catch (IOException | RuntimeException e) {
+            inputStream.close();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Validators of a response's content for conditional requests: a strong entity tag and the time of the last
+ * modification. Both are derived from file attributes only, so answering {@code 304 Not Modified} does not read any
+ * content.
+ */
+public class ContentVersion {
+
+    private final String tag;
+    private final long lastModified;
+
+    private ContentVersion(String tag, long lastModified) {
+        this.tag = tag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * @param entryName name of the entry within an archive (whose attributes are given), or null for a plain file
+     */
+    public static ContentVersion of(BasicFileAttributes attributes, String entryName) {
+        return new ContentVersion(digest(Objects.toString(attributes.fileKey()), String.valueOf(attributes.size()),
+                attributes.lastModifiedTime().toString(), entryName),
+                attributes.lastModifiedTime().toMillis());
+    }
+
+    /**
+     * @param lastModified last modification of the listed folder or archive itself
+     * @param variant further state the rendered listing depends on
+     */
+    public static ContentVersion of(List<FileEntry> entries, long lastModified, String variant) {
+        String[] values = new String[entries.size() * 4 + 1];
+        int i = 0;
+        long newest = lastModified;
+        for (FileEntry entry : entries) {
+            values[i++] = entry.getDisplayFilename();
+            values[i++] = entry.getFileType().name();
+            values[i++] = String.valueOf(entry.getSize());
+            values[i++] = entry.getModified().toString();
+            newest = Math.max(newest, entry.getModified().toMillis());
+        }
+        values[i] = variant;
+        return new ContentVersion(digest(values), newest);
+    }
+
+    /**
+     * @param encoding content encoding of the response, as each encoding is a different representation
+     */
+    public String getETag(String encoding) {
+        return "\"" + tag + (encoding != null ? "-" + encoding : "") + "\"";
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Sets the validators and answers the request with {@code 304 Not Modified} if the client's copy is current.
+     * {@code If-None-Match} takes precedence over {@code If-Modified-Since}.
+     *
+     * @param lastModifiedHeader whether to send {@code Last-Modified} and honor {@code If-Modified-Since}
+     * @return whether the response is complete
+     */
+    public boolean checkNotModified(String encoding, boolean lastModifiedHeader, HttpServletRequest request,
+                                    HttpServletResponse response) {
+        String etag = getETag(encoding);
+        response.setHeader("ETag", etag);
+        if (lastModifiedHeader) {
+            response.setDateHeader("Last-Modified", lastModified);
+        }
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        boolean notModified;
+        if (ifNoneMatch != null) {
+            notModified = matches(ifNoneMatch, etag);
+        }
+        else {
+            long ifModifiedSince = lastModifiedHeader ? ifModifiedSince(request) : -1;
+            // HTTP dates have a precision of seconds
+            notModified = ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+        }
+        if (notModified) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        }
+        return notModified;
+    }
+
+    /**
+     * Checks the validator a client sends with a range request ({@code If-Range}) to make sure the partial copy it
+     * completes is still current. Ranges refer to the uncompressed content, so only its entity tag matches.
+     *
+     * @return whether the requested ranges may be sent, rather than the whole content
+     */
+    public boolean matchesIfRange(HttpServletRequest request) {
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        String trimmed = ifRange.trim();
+        if (trimmed.startsWith("\"") || trimmed.startsWith("W/")) {
+            // strong comparison, so weak entity tags never match
+            return trimmed.equals(getETag(null));
+        }
+        try {
+            // the date has to match exactly, any other modification time means the client's copy is outdated
+            long date = request.getDateHeader("If-Range");
+            return date >= 0 && date / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            // weak comparison, as defined for If-None-Match
+            if (trimmed.equals("*") || (trimmed.startsWith("W/") ? trimmed.substring(2) : trimmed).equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long ifModifiedSince(HttpServletRequest request) {
+        try {
+            return request.getDateHeader("If-Modified-Since");
+        } catch (IllegalArgumentException e) {
+            // unparseable date, ignored like a missing header
+            return -1;
+        }
+    }
+
+    private static String digest(String... values) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            for (String value : values) {
+                if (value != null) {
+                    digest.update(value.getBytes(StandardCharsets.UTF_8));
+                }
+                digest.update((byte) 0);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("unable to create entity tag", e);
+        }
+    }
+}
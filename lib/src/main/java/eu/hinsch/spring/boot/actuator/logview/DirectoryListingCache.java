@@ -0,0 +1,290 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of directory listings, so listing a large log folder does not read the attributes of every file each time.
+ * <p>
+ * Listed folders are watched with a {@link WatchService}. Only the files an event was received for are read again
+ * on the next listing, an overflow of events reads the whole folder again. As some file systems (like NFS) do not
+ * deliver events, every listing is also read completely once it is older than the time to live.
+ * <p>
+ * The entries sorted by each {@link SortBy}, ascending and descending, are kept with the listing, so switching the
+ * sort order does not sort again. A changed file is moved to its new position in every sorted view (found by binary
+ * search), as the active log is modified all the time and must not cause the whole folder to be sorted again.
+ * <p>
+ * Closing the cache stops watching, listings are then only read again once they expired.
+ */
+public class DirectoryListingCache implements Closeable {
+
+    public static final long DEFAULT_TTL_MILLIS = 30000;
+
+    /**
+     * Reads the entry of a single file.
+     */
+    public interface EntryLoader {
+        FileEntry load(Path path) throws IOException;
+    }
+
+    private final long ttlMillis;
+    private final EntryLoader loader;
+    private final Map<Path, Listing> listings = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Path> watchedFolders = new ConcurrentHashMap<>();
+    private final AtomicLong sorts = new AtomicLong();
+    private WatchService watchService;
+    private boolean watchUnavailable;
+
+    public DirectoryListingCache(long ttlMillis, EntryLoader loader) {
+        this.ttlMillis = ttlMillis;
+        this.loader = loader;
+    }
+
+    /**
+     * @return the entries of the folder in the given order, a copy that is not affected by later changes
+     */
+    public List<FileEntry> getFileEntries(Path folder, SortBy sortBy, boolean desc) throws IOException {
+        return getFileEntries(folder, sortBy, desc, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Only the page is copied from the sorted view, so a request takes time in the size of the page (plus a binary
+     * search per changed file) once the folder's listing is read and sorted.
+     *
+     * @return at most {@code limit} entries of the folder in the given order, skipping the first {@code offset}
+     */
+    public List<FileEntry> getFileEntries(Path folder, SortBy sortBy, boolean desc, int offset, int limit)
+            throws IOException {
+        Path absoluteFolder = folder.toAbsolutePath();
+        Listing listing = listings.get(absoluteFolder);
+        if (listing == null || listing.isExpired()) {
+            listing = new Listing(absoluteFolder);
+            // watched and published before reading, so no change while reading is missed
+            watch(absoluteFolder);
+            // published holding the listing's monitor, so a concurrent request waits until it is read
+            synchronized (listing) {
+                listings.put(absoluteFolder, listing);
+                try {
+                    listing.load();
+                } catch (IOException | RuntimeException e) {
+                    listing.invalid = true;
+                    listings.remove(absoluteFolder, listing);
+                    throw e;
+                }
+            }
+        }
+        return listing.copy(sortBy, desc, offset, limit);
+    }
+
+    /**
+     * @return number of cached listings and of complete sorts of their entries
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("listings", listings.size());
+        statistics.put("sorts", sorts.get());
+        return statistics;
+    }
+
+    private void watch(Path folder) {
+        if (watchedFolders.containsValue(folder)) {
+            return;
+        }
+        try {
+            WatchService service = watchService();
+            if (service != null) {
+                watchedFolders.put(folder.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), folder);
+            }
+        } catch (IOException | ClosedWatchServiceException e) {
+            // not watchable, only the time to live applies
+        }
+    }
+
+    private synchronized WatchService watchService() {
+        if (watchService == null && !watchUnavailable) {
+            try {
+                watchService = FileSystems.getDefault().newWatchService();
+                WatchService service = watchService;
+                Thread thread = new Thread(() -> processEvents(service), "logview-listing-watch");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException | UnsupportedOperationException e) {
+                watchUnavailable = true;
+            }
+        }
+        return watchService;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        watchUnavailable = true;
+        if (watchService != null) {
+            watchedFolders.keySet().forEach(WatchKey::cancel);
+            watchedFolders.clear();
+            // ends the watch thread
+            watchService.close();
+            watchService = null;
+        }
+    }
+
+    private void processEvents(WatchService service) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path folder = watchedFolders.get(key);
+            Listing listing = folder != null ? listings.get(folder) : null;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (listing == null) {
+                    continue;
+                }
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    listing.invalid = true;
+                }
+                else {
+                    listing.changed.add(event.context().toString());
+                }
+            }
+            if (!key.reset()) {
+                // folder is gone
+                watchedFolders.remove(key);
+                if (folder != null) {
+                    listings.remove(folder);
+                }
+            }
+        }
+    }
+
+    private class Listing {
+        private final Path folder;
+        private final long loaded = System.currentTimeMillis();
+        private final Set<String> changed = ConcurrentHashMap.newKeySet();
+        private volatile boolean invalid;
+        // guarded by this
+        private final Map<String, FileEntry> entries = new HashMap<>();
+        private final Map<SortBy, List<FileEntry>> ascending = new EnumMap<>(SortBy.class);
+        private final Map<SortBy, List<FileEntry>> descending = new EnumMap<>(SortBy.class);
+
+        Listing(Path folder) {
+            this.folder = folder;
+        }
+
+        boolean isExpired() {
+            return invalid || System.currentTimeMillis() - loaded > ttlMillis;
+        }
+
+        synchronized void load() throws IOException {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+                for (Path path : stream) {
+                    try {
+                        entries.put(path.getFileName().toString(), loader.load(path));
+                    } catch (NoSuchFileException e) {
+                        // deleted while listing
+                    }
+                }
+            }
+        }
+
+        synchronized List<FileEntry> copy(SortBy sortBy, boolean desc, int offset, int limit) throws IOException {
+            List<FileEntry> view = sorted(sortBy, desc);
+            int from = Math.min(offset, view.size());
+            return new ArrayList<>(view.subList(from, from + Math.min(limit, view.size() - from)));
+        }
+
+        /**
+         * @return the sorted view, only to be used holding the monitor
+         */
+        private List<FileEntry> sorted(SortBy sortBy, boolean desc) throws IOException {
+            if (!changed.isEmpty()) {
+                update();
+            }
+            Map<SortBy, List<FileEntry>> views = desc ? descending : ascending;
+            List<FileEntry> view = views.get(sortBy);
+            if (view == null) {
+                view = new ArrayList<>(entries.values());
+                view.sort(order(sortBy, desc));
+                sorts.incrementAndGet();
+                views.put(sortBy, view);
+            }
+            return view;
+        }
+
+        private void update() throws IOException {
+            for (String name : new ArrayList<>(changed)) {
+                changed.remove(name);
+                FileEntry entry = load(name);
+                FileEntry previous = entry != null ? entries.put(name, entry) : entries.remove(name);
+                ascending.forEach((sortBy, view) -> move(view, order(sortBy, false), previous, entry));
+                descending.forEach((sortBy, view) -> move(view, order(sortBy, true), previous, entry));
+            }
+        }
+
+        private FileEntry load(String name) throws IOException {
+            try {
+                return loader.load(folder.resolve(name));
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Entries with equal keys are ordered by file name, so every entry has a distinct position to search for.
+     */
+    private static Comparator<FileEntry> order(SortBy sortBy, boolean desc) {
+        Comparator<FileEntry> order = sortBy.comparator().thenComparing(FileEntry::getFilename);
+        return desc ? order.reversed() : order;
+    }
+
+    /**
+     * Replaces the previous entry of a file by its changed entry within a sorted view.
+     *
+     * @param previous entry to remove, or null for a new file
+     * @param entry entry to insert, or null for a deleted file
+     */
+    private static void move(List<FileEntry> view, Comparator<FileEntry> order, FileEntry previous, FileEntry entry) {
+        int index = previous != null ? Collections.binarySearch(view, previous, order) : -1;
+        if (index >= 0 && entry != null && fits(view, order, index, entry)) {
+            // e.g. the modification of a file sorted by name, its position stays the same
+            view.set(index, entry);
+            return;
+        }
+        if (index >= 0) {
+            view.remove(index);
+        }
+        if (entry != null) {
+            int insertion = Collections.binarySearch(view, entry, order);
+            view.add(insertion >= 0 ? insertion : -insertion - 1, entry);
+        }
+    }
+
+    private static boolean fits(List<FileEntry> view, Comparator<FileEntry> order, int index, FileEntry entry) {
+        return (index == 0 || order.compare(view.get(index - 1), entry) < 0)
+                && (index == view.size() - 1 || order.compare(entry, view.get(index + 1)) < 0);
+    }
+}
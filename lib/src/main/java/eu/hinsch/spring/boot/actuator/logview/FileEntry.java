@@ -3,6 +3,7 @@ package eu.hinsch.spring.boot.actuator.logview;
 import org.apache.commons.io.FileUtils;
 
 import java.nio.file.attribute.FileTime;
+import java.util.Date;
 
 /**
 * Created by lh on 26/02/15.
@@ -39,7 +40,13 @@ public class FileEntry {
         this.size = size;
     }
 
+    /**
+     * @return the set relative modification time, or else the current one
+     */
     public String getModifiedPretty() {
+        if (modifiedPretty == null && modified != null) {
+            return AbstractFileProvider.prettyTime.format(new Date(modified.toMillis()));
+        }
         return modifiedPretty;
     }
 
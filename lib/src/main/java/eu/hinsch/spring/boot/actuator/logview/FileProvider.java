@@ -14,9 +14,83 @@ public interface FileProvider {
 
     List<FileEntry> getFileEntries(Path folder) throws IOException;
 
+    /**
+     * @return at most {@code limit} entries of the folder in the given order, skipping the first {@code offset}
+     */
+    default List<FileEntry> getFileEntries(Path folder, SortBy sortBy, boolean desc, int offset, int limit)
+            throws IOException {
+        List<FileEntry> first = sortBy.first(getFileEntries(folder), desc, (int) Math.min((long) offset + limit,
+                Integer.MAX_VALUE));
+        return first.subList(Math.min(offset, first.size()), first.size());
+    }
+
     void streamContent(Path folder, String filename, OutputStream stream) throws IOException;
 
+    /**
+     * @return version of the file's content for conditional requests, or null if it is not known without reading it
+     */
+    default ContentVersion contentVersion(Path folder, String filename) throws IOException {
+        return null;
+    }
+
+    /**
+     * @return length of the file's content if any part of it can be read directly with
+     * {@link #streamContent(Path, String, OutputStream, long, long)}, otherwise -1
+     */
+    default long rangeLength(Path folder, String filename) throws IOException {
+        return -1;
+    }
+
+    /**
+     * Writes {@code length} bytes of the file's content starting at {@code offset}.
+     */
+    default void streamContent(Path folder, String filename, OutputStream stream, long offset, long length)
+            throws IOException {
+        throw new UnsupportedOperationException("by default no ranges possible");
+    }
+
+    /**
+     * @return a file holding exactly the file's content, which the container may send without copying it, or null
+     */
+    default Path plainFile(Path folder, String filename) {
+        return null;
+    }
+
+    /**
+     * @return a gzip file holding exactly the file's content, to be sent without decompressing, or null
+     */
+    default Path gzipFile(Path folder, String filename) {
+        return null;
+    }
+
     default void tailContent(Path folder, String filename, OutputStream stream, int lines) throws IOException {
         throw new UnsupportedOperationException("by default no tailing possible");
     }
+
+    default void tailBytes(Path folder, String filename, OutputStream stream, long bytes) throws IOException {
+        throw new UnsupportedOperationException("by default no tailing possible");
+    }
+
+    /**
+     * Writes {@code lines} lines of the file, starting with line number {@code fromLine} (the first line is 0).
+     */
+    default void streamLines(Path folder, String filename, OutputStream stream, long fromLine, int lines)
+            throws IOException {
+        throw new UnsupportedOperationException("by default no line paging possible");
+    }
+
+    /**
+     * Writes the lines of the file that lie within the time range.
+     */
+    default void streamContent(Path folder, String filename, OutputStream stream, TimeRange timeRange)
+            throws IOException {
+        throw new UnsupportedOperationException("by default no time range possible");
+    }
+
+    /**
+     * @return tasks searching the files in the folder, each of them may run in parallel to the others
+     */
+    default List<OrderedParallelSearch.Task> searchTasks(Path folder, SearchContext search) throws IOException {
+        throw new UnsupportedOperationException("by default no searching possible");
+    }
 }
@@ -1,61 +1,120 @@
 package eu.hinsch.spring.boot.actuator.logview;
 
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.input.ReversedLinesFileReader;
+import org.apache.commons.io.input.BoundedInputStream;
 
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Date;
 import java.util.List;
 
 /**
 * Created by lh on 28/02/15.
 */
-public class FileSystemFileProvider extends AbstractFileProvider {
+public class FileSystemFileProvider extends AbstractFileProvider implements Closeable {
+
+    public static final long DEFAULT_MMAP_THRESHOLD = 64 * 1024 * 1024;
+
+
+    private final long mmapThreshold;
+    private final TimestampIndex timestampIndex = new TimestampIndex();
+    private final LineIndex lineIndex = new LineIndex();
+    private final DirectoryListingCache listingCache;
+
+    public FileSystemFileProvider() {
+        this(DEFAULT_MMAP_THRESHOLD);
+    }
+
+    /**
+     * @param mmapThreshold files of at least this size are read through memory mapping
+     */
+    public FileSystemFileProvider(long mmapThreshold) {
+        this(mmapThreshold, DirectoryListingCache.DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * @param mmapThreshold files of at least this size are read through memory mapping
+     * @param listingTtlMillis time after which a cached directory listing is read again completely
+     */
+    public FileSystemFileProvider(long mmapThreshold, long listingTtlMillis) {
+        this.mmapThreshold = mmapThreshold;
+        this.listingCache = new DirectoryListingCache(listingTtlMillis, this::createFileEntry);
+    }
 
     @Override
     public boolean canHandle(Path folder) {
         return folder.toFile().isDirectory();
     }
 
+    /**
+     * Stops watching listed folders and indexing lines in the background.
+     */
+    @Override
+    public void close() throws IOException {
+        lineIndex.close();
+        listingCache.close();
+    }
+
     @Override
     public List<FileEntry> getFileEntries(Path loggingPath) throws IOException {
         final List<FileEntry> files = new ArrayList<>();
-        Files.newDirectoryStream(loggingPath)
-                .forEach((path) -> files.add(createFileEntry(path)));
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(loggingPath)) {
+            for (Path path : paths) {
+                files.add(createFileEntry(path));
+            }
+        }
         return files;
     }
 
-    private FileEntry createFileEntry(Path path)  {
+    /**
+     * Copied from the sorted views of the {@link DirectoryListingCache}, which are kept up to date file by file
+     * instead of selecting the page from all entries per request.
+     */
+    @Override
+    public List<FileEntry> getFileEntries(Path folder, SortBy sortBy, boolean desc, int offset, int limit)
+            throws IOException {
+        return listingCache.getFileEntries(folder, sortBy, desc, offset, limit);
+    }
+
+    @Override
+    public ContentVersion contentVersion(Path folder, String filename) throws IOException {
+        return ContentVersion.of(Files.readAttributes(getFile(folder, filename).toPath(), BasicFileAttributes.class),
+                null);
+    }
+
+    /**
+     * Reads all attributes at once. The relative modification time is not set, as the entry may be cached.
+     */
+    private FileEntry createFileEntry(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
         final FileEntry fileEntry = new FileEntry();
-        try {
-            fileEntry.setFilename(URLEncoder.encode(path.getFileName().toString(), "UTF-8"));
-            fileEntry.setDisplayFilename(path.getFileName().toString());
-            fileEntry.setModified(Files.getLastModifiedTime(path));
-            fileEntry.setSize(Files.size(path));
-        } catch (IOException e) {
-            throw new RuntimeException("unable to retrieve file attribute", e);
-        }
-        fileEntry.setModifiedPretty(prettyTime.format(new Date(fileEntry.getModified().toMillis())));
-        fileEntry.setFileType(getFileType(path));
+        fileEntry.setFilename(URLEncoder.encode(path.getFileName().toString(), "UTF-8"));
+        fileEntry.setDisplayFilename(path.getFileName().toString());
+        fileEntry.setModified(attributes.lastModifiedTime());
+        fileEntry.setSize(attributes.size());
+        fileEntry.setFileType(getFileType(path, attributes));
 
         return fileEntry;
     }
 
-    private FileType getFileType(Path path) {
+    private FileType getFileType(Path path, BasicFileAttributes attributes) {
         FileType fileType;
-        if (path.toFile().isDirectory()) {
+        if (attributes.isDirectory()) {
             fileType = FileType.DIRECTORY;
         }
-        else if (isArchive(path)) {
+        else if (isArchive(path, attributes)) {
             fileType = FileType.ARCHIVE;
         }
         else {
@@ -66,24 +125,180 @@ public class FileSystemFileProvider extends AbstractFileProvider {
 
     @Override
     public void streamContent(Path folder, String filename, OutputStream stream) throws IOException {
-        IOUtils.copy(new FileInputStream(getFile(folder, filename)), stream);
+        File file = getFile(folder, filename);
+        if (isMapped(file)) {
+            try (MappedFileReader reader = new MappedFileReader(file.toPath())) {
+                reader.transferTo(0, Long.MAX_VALUE, stream);
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            transferTo(channel, 0, Long.MAX_VALUE, stream);
+        }
+    }
+
+    @Override
+    public Path plainFile(Path folder, String filename) {
+        return getFile(folder, filename).toPath();
+    }
+
+    @Override
+    public void streamContent(Path folder, String filename, OutputStream stream, TimeRange timeRange)
+            throws IOException {
+        File file = getFile(folder, filename);
+        TrigramIndex.Range window = timestampIndex.window(file.toPath(), timeRange);
+        if (isMapped(file)) {
+            try (MappedFileReader reader = new MappedFileReader(file.toPath())) {
+                reader.transferTo(window.getOffset(), window.getLength(), stream);
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            transferTo(channel, window.getOffset(), window.getLength(), stream);
+        }
+    }
+
+    @Override
+    public void streamLines(Path folder, String filename, OutputStream stream, long fromLine, int lines)
+            throws IOException {
+        File file = getFile(folder, filename);
+        long start = lineIndex.offsetOf(file.toPath(), fromLine);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long end = LineIndex.skipLines(channel, start, lines);
+            transferTo(channel, start, end - start, stream);
+        }
+    }
+
+    @Override
+    public long rangeLength(Path folder, String filename) {
+        return getFile(folder, filename).length();
+    }
+
+    @Override
+    public void streamContent(Path folder, String filename, OutputStream stream, long offset, long length)
+            throws IOException {
+        File file = getFile(folder, filename);
+        if (isMapped(file)) {
+            try (MappedFileReader reader = new MappedFileReader(file.toPath())) {
+                reader.transferTo(offset, length, stream);
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            transferTo(channel, offset, length, stream);
+        }
+    }
+
+    private boolean isMapped(File file) {
+        return file.length() >= mmapThreshold;
     }
 
     private File getFile(Path folder, String filename) {
         return Paths.get(folder.toString(), filename).toFile();
     }
 
+    @Override
+    public List<OrderedParallelSearch.Task> searchTasks(Path folder, SearchContext search) throws IOException {
+        List<FileEntry> files = getFileEntries(folder);
+        files.sort(SortBy.MODIFIED.comparator());
+        List<OrderedParallelSearch.Task> tasks = new ArrayList<>();
+        for (FileEntry file : files) {
+            Path path = folder.resolve(file.getDisplayFilename());
+            if (file.getFileType() == FileType.FILE) {
+                if (search.includes(file.getDisplayFilename())) {
+                    tasks.add(output -> searchFile(path, search, output));
+                }
+            }
+            else if (file.getFileType() == FileType.ARCHIVE) {
+                tasks.add(OrderedParallelSearch.deferred(() -> search.archiveTasks(path)));
+            }
+            else if (search.descendsInto(path)) {
+                tasks.add(search.folderTask(path));
+            }
+        }
+        return tasks;
+    }
+
+    private void searchFile(Path file, SearchContext search, OutputStream output) throws IOException {
+        String displayName = search.displayName(file.getParent(), file.getFileName().toString());
+        long start = search.startOffset(displayName);
+        if (start < 0) {
+            return;
+        }
+        long end = Long.MAX_VALUE;
+        if (search.getTimeRange() != null) {
+            TrigramIndex.Range window = timestampIndex.window(file, search.getTimeRange());
+            start = Math.max(start, window.getOffset());
+            end = window.getLength() == Long.MAX_VALUE ? Long.MAX_VALUE : window.getOffset() + window.getLength();
+        }
+        List<TrigramIndex.Range> ranges = search.candidates(file, start, end);
+        if (isMapped(file.toFile())) {
+            try (MappedFileReader reader = new MappedFileReader(file)) {
+                for (TrigramIndex.Range range : ranges) {
+                    if (search.isDone()) {
+                        break;
+                    }
+                    search.searchMapped(reader, range, displayName, output);
+                }
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (TrigramIndex.Range range : ranges) {
+                if (search.isDone()) {
+                    break;
+                }
+                InputStream inputStream = new BoundedInputStream(Channels.newInputStream(channel.position(range.getOffset())),
+                        range.getLength());
+                search.searchStream(inputStream, range.getOffset(), displayName, output);
+            }
+        }
+    }
+
     @Override
     public void tailContent(Path folder, String filename, OutputStream stream, int lines) throws IOException {
-        try (ReversedLinesFileReader reader = new ReversedLinesFileReader(getFile(folder, filename))) {
-            int i = 0;
-            String line;
-            List<String> content = new ArrayList<>();
-            while ((line = reader.readLine()) != null && i++ < lines) {
-                content.add(line);
+        File file = getFile(folder, filename);
+        if (isMapped(file)) {
+            try (MappedFileReader reader = new MappedFileReader(file.toPath())) {
+                reader.transferTo(reader.tailOffset(lines), Long.MAX_VALUE, stream);
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            transferTo(channel, MappedFileReader.tailOffset(channel, lines), Long.MAX_VALUE, stream);
+        }
+    }
+
+    @Override
+    public void tailBytes(Path folder, String filename, OutputStream stream, long bytes) throws IOException {
+        File file = getFile(folder, filename);
+        if (isMapped(file)) {
+            try (MappedFileReader reader = new MappedFileReader(file.toPath())) {
+                reader.transferTo(Math.max(0, reader.size() - bytes), Long.MAX_VALUE, stream);
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            transferTo(channel, Math.max(0, channel.size() - bytes), Long.MAX_VALUE, stream);
+        }
+    }
+
+    /**
+     * Writes {@code length} bytes starting at {@code position} (or until the end of the file) to the output.
+     */
+    private static void transferTo(FileChannel channel, long position, long length, OutputStream stream)
+            throws IOException {
+        WritableByteChannel target = Channels.newChannel(stream);
+        long end = channel.size();
+        if (length < end - position) {
+            end = position + length;
+        }
+        while (position < end) {
+            long transferred = channel.transferTo(position, end - position, target);
+            if (transferred <= 0) {
+                break;
             }
-            Collections.reverse(content);
-            IOUtils.writeLines(content, System.lineSeparator(), stream);
+            position += transferred;
         }
     }
 }
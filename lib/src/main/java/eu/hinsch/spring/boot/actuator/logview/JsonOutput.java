@@ -0,0 +1,86 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * JSON written with Jackson's streaming {@link JsonGenerator}, so every record is written as soon as it is known
+ * instead of building the whole document first.
+ */
+public final class JsonOutput {
+
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            // records of newline delimited JSON are separated explicitly
+            .setRootValueSeparator(null)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+
+    private JsonOutput() {
+    }
+
+    /**
+     * @return generator writing UTF-8 to the stream, neither flushing nor closing it
+     */
+    public static JsonGenerator generator(OutputStream outputStream) throws IOException {
+        return JSON_FACTORY.createGenerator(outputStream);
+    }
+
+    /**
+     * @return stream writing every line of the UTF-8 content written to it as a JSON string, without the line break;
+     * has to be closed to write the last line if it does not end with a line break
+     */
+    public static OutputStream lines(JsonGenerator generator) {
+        return new LineOutputStream(generator);
+    }
+
+    private static class LineOutputStream extends OutputStream {
+        private final JsonGenerator generator;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        LineOutputStream(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (b == '\n') {
+                writeLine();
+            }
+            else {
+                line.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int start = off;
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n') {
+                    line.write(b, start, i - start);
+                    writeLine();
+                    start = i + 1;
+                }
+            }
+            line.write(b, start, off + len - start);
+        }
+
+        private void writeLine() throws IOException {
+            String content = line.toString("UTF-8");
+            generator.writeString(content.endsWith("\r") ? content.substring(0, content.length() - 1) : content);
+            line.reset();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (line.size() > 0) {
+                writeLine();
+            }
+        }
+    }
+}
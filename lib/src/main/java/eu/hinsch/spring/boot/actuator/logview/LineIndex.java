@@ -0,0 +1,204 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Sparse in-memory index from line numbers to byte offsets for plain log files, used to page through a file
+ * without reading it from the start.
+ * <p>
+ * The offset of every {@link #CHECKPOINT_INTERVAL}th line is recorded. A lookup starts at the checkpoint before the
+ * requested line and reads at most the lines up to the next one. The checkpoints of a file are built on first access
+ * on a background thread, until they are complete lookups start at the last checkpoint built so far.
+ * <p>
+ * Checkpoints are cached by modification time and size. A file that only grew keeps its checkpoints and the new
+ * content is indexed in the background, a replaced or truncated file is indexed again.
+ */
+public class LineIndex implements Closeable {
+
+    public static final int CHECKPOINT_INTERVAL = 10000;
+
+    private static final int READ_SIZE = 64 * 1024;
+
+    private final Map<Path, Checkpoints> checkpoints = new ConcurrentHashMap<>();
+    private final Set<Path> building = ConcurrentHashMap.newKeySet();
+    private final ExecutorService builder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "logview-line-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Stops indexing in the background, files are then only indexed while they are read.
+     */
+    @Override
+    public void close() {
+        builder.shutdownNow();
+    }
+
+    /**
+     * @param line number of the line, starting with 0
+     * @return offset of the line, or the end of the file if it has less lines
+     */
+    public long offsetOf(Path file, long line) throws IOException {
+        Path absoluteFile = file.toAbsolutePath();
+        try (FileChannel channel = FileChannel.open(absoluteFile, StandardOpenOption.READ)) {
+            Checkpoints fileCheckpoints = checkpoints(absoluteFile, channel);
+            int index = (int) Math.min(line / CHECKPOINT_INTERVAL, fileCheckpoints.count - 1);
+            long offset = fileCheckpoints.offsets[index];
+            return skipLines(channel, offset, line - (long) index * CHECKPOINT_INTERVAL);
+        }
+    }
+
+    /**
+     * @return offset behind the given number of lines starting at {@code offset}, or the end of the file
+     */
+    static long skipLines(FileChannel channel, long offset, long lines) throws IOException {
+        if (lines <= 0) {
+            return offset;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(READ_SIZE);
+        long position = offset;
+        long remaining = lines;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                return position;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n' && --remaining == 0) {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * @return the checkpoints that are valid for the current content of the file, schedules indexing the rest
+     */
+    private Checkpoints checkpoints(Path file, FileChannel channel) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        Checkpoints cached = checkpoints.get(file);
+        if (cached != null && cached.lastModified == attributes.lastModifiedTime().toMillis()
+                && cached.size == attributes.size()) {
+            return cached;
+        }
+        if (cached == null || !cached.isValidFor(channel, attributes)) {
+            cached = new Checkpoints(attributes.fileKey());
+            checkpoints.put(file, cached);
+        }
+        if (building.add(file)) {
+            builder.execute(() -> build(file));
+        }
+        return cached;
+    }
+
+    private void build(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            Checkpoints cached = checkpoints.get(file);
+            if (cached != null && cached.isValidFor(channel, attributes)) {
+                checkpoints.put(file, cached.extend(channel, attributes));
+            }
+        } catch (IOException e) {
+            // lookups keep starting at the last checkpoint, the next lookup tries again
+            checkpoints.remove(file);
+        } finally {
+            building.remove(file);
+        }
+    }
+
+    /**
+     * Checkpoints of a single file, never changed once published.
+     */
+    private static class Checkpoints {
+        private final Object fileKey;
+        private long lastModified = -1;
+        private long size;
+        // number of lines ending before position
+        private long lines;
+        private long position;
+        private long[] offsets = new long[16];
+        private int count = 1;
+
+        Checkpoints(Object fileKey) {
+            this.fileKey = fileKey;
+        }
+
+        /**
+         * Checks whether the file may only have grown since it was indexed. A file truncated in place and written
+         * again (like with copytruncate rotation) keeps its file key and may already be larger than before, but
+         * its modification time does not move backwards and its last checkpoint is most likely not behind a line
+         * break anymore.
+         */
+        boolean isValidFor(FileChannel channel, BasicFileAttributes attributes) throws IOException {
+            if (!Objects.equals(fileKey, attributes.fileKey()) || size > attributes.size()
+                    || lastModified > attributes.lastModifiedTime().toMillis()) {
+                return false;
+            }
+            long lastOffset = offsets[count - 1];
+            if (lastOffset == 0) {
+                return true;
+            }
+            ByteBuffer lineBreak = ByteBuffer.allocate(1);
+            return channel.read(lineBreak, lastOffset - 1) == 1 && lineBreak.get(0) == '\n';
+        }
+
+        /**
+         * @return copy of the checkpoints, extended up to the current end of the file
+         */
+        Checkpoints extend(FileChannel channel, BasicFileAttributes attributes) throws IOException {
+            Checkpoints extended = new Checkpoints(fileKey);
+            extended.offsets = Arrays.copyOf(offsets, offsets.length);
+            extended.count = count;
+            extended.lines = lines;
+            extended.position = position;
+            extended.lastModified = attributes.lastModifiedTime().toMillis();
+            extended.size = attributes.size();
+            extended.indexUpTo(channel, extended.size);
+            return extended;
+        }
+
+        private void indexUpTo(FileChannel channel, long end) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(READ_SIZE);
+            while (position < end) {
+                buffer.clear();
+                if (end - position < buffer.capacity()) {
+                    buffer.limit((int) (end - position));
+                }
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    return;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n' && ++lines % CHECKPOINT_INTERVAL == 0) {
+                        add(position + i + 1);
+                    }
+                }
+                position += read;
+            }
+        }
+
+        private void add(long offset) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = offset;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decides which lines of UTF-8 encoded log content match a search. Content is passed as heap or memory mapped
+ * {@link ByteBuffer}, positions are absolute indexes into the buffer.
+ * <p>
+ * Matching is done in two steps: {@link #find} quickly locates positions that may be part of a match, only the
+ * lines around those positions are then checked with {@link #matches}.
+ */
+public interface LineMatcher {
+
+    static LineMatcher literal(String term) {
+        return new LiteralMatcher(term.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static LineMatcher regex(String pattern) {
+        return new RegexMatcher(pattern);
+    }
+
+    /**
+     * @return position of the next possible match in {@code data[from, to)}, or -1 if there is none
+     */
+    int find(ByteBuffer data, int from, int to);
+
+    /**
+     * @return whether the line {@code data[start, end)}, which contains a position returned by {@link #find},
+     * really matches
+     */
+    boolean matches(ByteBuffer data, int start, int end);
+
+    /**
+     * @return bytes every matching line has to contain, may be empty
+     */
+    byte[] requiredLiteral();
+}
@@ -0,0 +1,432 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Searches UTF-8 log content and writes every matching line to the output as soon as it is found.
+ * Content is read in fixed-size chunks, so memory use does not depend on the size of the searched file
+ * (only on the length of its longest line). The {@link LineMatcher} works directly on the bytes of a chunk,
+ * matching lines are copied to the output as they are stored. Memory mapped files are searched in place.
+ * <p>
+ * Like grep's {@code -B} and {@code -A}, lines before and after each match can be written as context.
+ * Overlapping contexts are merged, separate blocks are divided by a {@code --} line. Preceding lines are taken
+ * from the current chunk where possible; the last lines of the previous chunk are kept in a ring buffer of
+ * reused line copies, so memory stays bounded by the number of context lines times the longest line.
+ * <p>
+ * Instead of plain lines, the output can also be newline delimited JSON: one object per line with the name of the
+ * searched file, the line's byte offset within it, whether it is a match (or only context) and the line itself.
+ */
+public class LineSearcher {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Upper bound of context lines before and after a match, as preceding lines are kept in memory.
+     */
+    public static final int MAX_CONTEXT_LINES = 1000;
+
+    private static final long FLUSH_INTERVAL_MILLIS = 100;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private static final byte[] BLOCK_SEPARATOR = ("--" + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+
+    private final LineMatcher matcher;
+    private final SearchPage page;
+    private final int before;
+    private final int after;
+    private final int bufferSize;
+    private boolean json;
+
+    public LineSearcher(String term) {
+        this(LineMatcher.literal(term), null);
+    }
+
+    /**
+     * @param page page to fill, or null to search without limit
+     */
+    public LineSearcher(LineMatcher matcher, SearchPage page) {
+        this(matcher, page, 0, 0);
+    }
+
+    /**
+     * @param before number of context lines to write before each match
+     * @param after number of context lines to write after each match
+     */
+    public LineSearcher(LineMatcher matcher, SearchPage page, int before, int after) {
+        this(matcher, page, before, after, DEFAULT_BUFFER_SIZE);
+    }
+
+    public LineSearcher(LineMatcher matcher, SearchPage page, int before, int after, int bufferSize) {
+        checkContext(before, after);
+        this.matcher = matcher;
+        this.page = page;
+        this.before = before;
+        this.after = after;
+        this.bufferSize = bufferSize;
+    }
+
+    static void checkContext(int before, int after) {
+        Assert.isTrue(before <= MAX_CONTEXT_LINES && after <= MAX_CONTEXT_LINES,
+                "context must not exceed " + MAX_CONTEXT_LINES + " lines");
+    }
+
+    /**
+     * @param json whether to write newline delimited JSON records instead of plain lines
+     */
+    public void setJson(boolean json) {
+        this.json = json;
+    }
+
+    /**
+     * @param offset position of the stream's first byte within the searched file
+     * @return number of matching lines written
+     */
+    public long search(InputStream inputStream, long offset, String name, OutputStream outputStream) throws IOException {
+        Output output = new Output(name, outputStream);
+        byte[] buffer = new byte[bufferSize];
+        int length = 0;
+        int read;
+        while (!output.stopped && (read = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+            ByteBuffer content = ByteBuffer.wrap(buffer);
+            int consumed = lastLineBreak(content, length) + 1;
+            searchLines(content, offset, consumed, output);
+            if (consumed == 0 && length == buffer.length) {
+                // single line exceeds the buffer, grow it to hold the line
+                byte[] grown = new byte[buffer.length * 2];
+                System.arraycopy(buffer, 0, grown, 0, length);
+                buffer = grown;
+            }
+            else {
+                System.arraycopy(buffer, consumed, buffer, 0, length - consumed);
+                length -= consumed;
+                offset += consumed;
+            }
+            output.flushIfDue();
+        }
+        if (length > 0 && !output.stopped) {
+            searchLines(ByteBuffer.wrap(buffer), offset, length, output);
+        }
+        output.flush();
+        return output.matches;
+    }
+
+    /**
+     * Searches the file from {@code from} to {@code to}, or to the end of the file if it grows while being searched
+     * and {@code to} is {@link Long#MAX_VALUE}.
+     *
+     * @return number of matching lines written
+     */
+    public long search(MappedFileReader file, long from, long to, String name, OutputStream outputStream)
+            throws IOException {
+        Output output = new Output(name, outputStream);
+        long position = from;
+        long end;
+        while (!output.stopped && position < (end = Math.min(to, file.size()))) {
+            ByteBuffer window = file.map(position, Math.min(end - position, MappedFileReader.WINDOW_SIZE));
+            int length = window.limit();
+            if (position + length < end) {
+                int lastLineBreak = lastLineBreak(window, length);
+                // a line longer than a whole window is split
+                length = lastLineBreak >= 0 ? lastLineBreak + 1 : length;
+            }
+            searchLines(window, position, length, output);
+            position += length;
+            output.flushIfDue();
+        }
+        output.flush();
+        return output.matches;
+    }
+
+    private static int lastLineBreak(ByteBuffer buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Searches {@code buffer[0, end)}, which has to end at the end of a line.
+     *
+     * @param offset position of the buffer's first byte within the searched file
+     */
+    private void searchLines(ByteBuffer buffer, long offset, int end, Output output) throws IOException {
+        int position = 0;
+        while (position < end && !output.stopped) {
+            int lineStart;
+            int lineEnd;
+            int contentEnd;
+            boolean match;
+            if (output.afterRemaining > 0) {
+                // every line is written now, either as match or as context
+                lineStart = position;
+                lineEnd = lineEnd(buffer, position, end);
+                contentEnd = contentEnd(buffer, lineStart, lineEnd);
+                match = matcher.find(buffer, lineStart, contentEnd) >= 0
+                        && matcher.matches(buffer, lineStart, contentEnd);
+            }
+            else {
+                int candidate = matcher.find(buffer, position, end);
+                if (candidate < 0) {
+                    break;
+                }
+                lineStart = candidate;
+                while (lineStart > position && buffer.get(lineStart - 1) != '\n') {
+                    lineStart--;
+                }
+                lineEnd = lineEnd(buffer, candidate, end);
+                contentEnd = contentEnd(buffer, lineStart, lineEnd);
+                match = matcher.matches(buffer, lineStart, contentEnd);
+            }
+            position = Math.min(lineEnd + 1, end);
+            if (match) {
+                if (before > 0) {
+                    output.writeBefore(buffer, offset, lineStart);
+                }
+                output.write(buffer, lineStart, contentEnd, offset + lineStart, offset + position, true);
+                output.afterRemaining = after;
+            }
+            else if (output.afterRemaining > 0) {
+                output.write(buffer, lineStart, contentEnd, offset + lineStart, offset + position, false);
+                output.afterRemaining--;
+            }
+        }
+        if (before > 0) {
+            output.remember(buffer, offset, end);
+        }
+        if (page != null) {
+            page.scanned(output.stopped ? position : end);
+        }
+    }
+
+    private static int lineEnd(ByteBuffer buffer, int position, int end) {
+        while (position < end && buffer.get(position) != '\n') {
+            position++;
+        }
+        return position;
+    }
+
+    private static int contentEnd(ByteBuffer buffer, int lineStart, int lineEnd) {
+        return lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+    }
+
+    /**
+     * @return start of the line ending right before {@code lineStart}, not before {@code limit}
+     */
+    private static int previousLineStart(ByteBuffer buffer, int lineStart, int limit) {
+        int start = lineStart - 1;
+        while (start > limit && buffer.get(start - 1) != '\n') {
+            start--;
+        }
+        return start;
+    }
+
+    /**
+     * Copies of the last lines of the previous chunks, reused for every chunk.
+     */
+    private static class LineRing {
+        private final byte[][] lines;
+        private final int[] lengths;
+        private final long[] starts;
+        private final long[] nexts;
+        private int head;
+        private int count;
+
+        LineRing(int capacity) {
+            lines = new byte[capacity][];
+            lengths = new int[capacity];
+            starts = new long[capacity];
+            nexts = new long[capacity];
+        }
+
+        void add(ByteBuffer buffer, int start, int end, long lineStart, long next) {
+            int slot = (head + count) % lines.length;
+            if (count == lines.length) {
+                head = (head + 1) % lines.length;
+            }
+            else {
+                count++;
+            }
+            int length = end - start;
+            if (lines[slot] == null || lines[slot].length < length) {
+                lines[slot] = new byte[Math.max(length, 128)];
+            }
+            ByteBuffer content = buffer.duplicate();
+            content.position(start);
+            content.get(lines[slot], 0, length);
+            lengths[slot] = length;
+            starts[slot] = lineStart;
+            nexts[slot] = next;
+        }
+
+        int size() {
+            return count;
+        }
+
+        /**
+         * @param index 0 for the oldest line
+         */
+        int slot(int index) {
+            return (head + index) % lines.length;
+        }
+    }
+
+    private class Output {
+        private final String name;
+        private final byte[] prefix;
+        private final OutputStream outputStream;
+        private JsonGenerator generator;
+        private final LineRing ring = before > 0 ? new LineRing(before) : null;
+        private long matches;
+        private long lastFlush;
+        private boolean pending;
+        private boolean stopped;
+        private int afterRemaining;
+        private long writtenEnd = -1;
+
+        Output(String name, OutputStream outputStream) {
+            this.name = name;
+            this.prefix = ("[" + name + "] ").getBytes(StandardCharsets.UTF_8);
+            this.outputStream = outputStream;
+        }
+
+        /**
+         * Writes up to {@link #before} lines preceding the line at {@code lineStart} that have not been written yet.
+         *
+         * @param offset position of the buffer's first byte within the searched file
+         */
+        void writeBefore(ByteBuffer buffer, long offset, int lineStart) throws IOException {
+            int limit = (int) Math.max(0, Math.min(lineStart, writtenEnd - offset));
+            int[] starts = new int[before];
+            int found = 0;
+            int start = lineStart;
+            while (found < before && start > limit) {
+                start = previousLineStart(buffer, start, limit);
+                starts[found++] = start;
+            }
+            if (found < before && start == 0) {
+                // the rest of the context comes from the previous chunk
+                int fromRing = Math.min(before - found, ring.size());
+                for (int i = ring.size() - fromRing; i < ring.size(); i++) {
+                    int slot = ring.slot(i);
+                    if (ring.starts[slot] >= writtenEnd) {
+                        write(ByteBuffer.wrap(ring.lines[slot]), 0, ring.lengths[slot], ring.starts[slot],
+                                ring.nexts[slot], false);
+                    }
+                }
+            }
+            for (int i = found - 1; i >= 0; i--) {
+                int end = i > 0 ? starts[i - 1] - 1 : lineStart - 1;
+                write(buffer, starts[i], contentEnd(buffer, starts[i], end), offset + starts[i], offset + end + 1, false);
+            }
+        }
+
+        /**
+         * Keeps the last lines of {@code buffer[0, end)} as context for the next chunk.
+         */
+        void remember(ByteBuffer buffer, long offset, int end) {
+            if (end == 0) {
+                return;
+            }
+            int lineEnd = end > 0 && buffer.get(end - 1) == '\n' ? end - 1 : end;
+            int[] starts = new int[before];
+            int found = 0;
+            int start = lineEnd + 1;
+            while (found < before && start > 0) {
+                start = previousLineStart(buffer, start, 0);
+                starts[found++] = start;
+            }
+            for (int i = found - 1; i >= 0; i--) {
+                int next = i > 0 ? starts[i - 1] : end;
+                int contentEnd = contentEnd(buffer, starts[i], i > 0 ? next - 1 : lineEnd);
+                ring.add(buffer, starts[i], contentEnd, offset + starts[i], offset + next);
+            }
+        }
+
+        /**
+         * @param lineStart position of the line within the searched file
+         * @param next position behind the line within the searched file
+         * @param match whether the line is a match or only context
+         */
+        void write(ByteBuffer buffer, int start, int end, long lineStart, long next, boolean match)
+                throws IOException {
+            if (json) {
+                writeRecord(buffer, start, end, lineStart, match);
+            }
+            else {
+                if ((before > 0 || after > 0) && writtenEnd >= 0 && lineStart != writtenEnd) {
+                    outputStream.write(BLOCK_SEPARATOR);
+                }
+                outputStream.write(prefix);
+                if (buffer.hasArray()) {
+                    outputStream.write(buffer.array(), buffer.arrayOffset() + start, end - start);
+                }
+                else {
+                    outputStream.write(copy(buffer, start, end));
+                }
+                outputStream.write(LINE_SEPARATOR);
+            }
+            writtenEnd = next;
+            pending = true;
+            if (!match) {
+                return;
+            }
+            if (page != null && !page.matched(name, next)) {
+                stopped = true;
+            }
+            if (matches++ == 0) {
+                // get the first result to the client right away
+                flush();
+            }
+        }
+
+        private void writeRecord(ByteBuffer buffer, int start, int end, long lineStart, boolean match)
+                throws IOException {
+            if (generator == null) {
+                generator = JsonOutput.generator(outputStream);
+            }
+            String line = buffer.hasArray()
+                    ? new String(buffer.array(), buffer.arrayOffset() + start, end - start, StandardCharsets.UTF_8)
+                    : new String(copy(buffer, start, end), StandardCharsets.UTF_8);
+            generator.writeStartObject();
+            generator.writeStringField("file", name);
+            generator.writeNumberField("offset", lineStart);
+            generator.writeBooleanField("match", match);
+            generator.writeStringField("line", line);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            // only hands the record to the output stream, which is flushed below
+            generator.flush();
+        }
+
+        private byte[] copy(ByteBuffer buffer, int start, int end) {
+            byte[] line = new byte[end - start];
+            ByteBuffer content = buffer.duplicate();
+            content.position(start);
+            content.get(line);
+            return line;
+        }
+
+        void flushIfDue() throws IOException {
+            if (pending && System.currentTimeMillis() - lastFlush >= FLUSH_INTERVAL_MILLIS) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            if (pending) {
+                outputStream.flush();
+                pending = false;
+                lastFlush = System.currentTimeMillis();
+            }
+        }
+    }
+}
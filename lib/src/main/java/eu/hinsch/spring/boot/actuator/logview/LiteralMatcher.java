@@ -0,0 +1,90 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Finds a literal byte sequence using the Boyer-Moore-Horspool algorithm, so most bytes of the searched content
+ * are skipped without being looked at.
+ */
+public class LiteralMatcher implements LineMatcher {
+
+    private final byte[] pattern;
+    private final int[] shift = new int[256];
+
+    public LiteralMatcher(byte[] pattern) {
+        this.pattern = pattern.clone();
+        Arrays.fill(shift, pattern.length);
+        for (int i = 0; i < pattern.length - 1; i++) {
+            shift[pattern[i] & 0xff] = pattern.length - 1 - i;
+        }
+    }
+
+    @Override
+    public int find(ByteBuffer data, int from, int to) {
+        if (data.hasArray()) {
+            int offset = data.arrayOffset();
+            int found = find(data.array(), from + offset, to + offset);
+            return found < 0 ? -1 : found - offset;
+        }
+        int length = pattern.length;
+        if (length == 0) {
+            return from <= to ? from : -1;
+        }
+        byte last = pattern[length - 1];
+        int i = from + length - 1;
+        while (i < to) {
+            byte b = data.get(i);
+            if (b == last && startsWith(data, i - length + 1)) {
+                return i - length + 1;
+            }
+            i += shift[b & 0xff];
+        }
+        return -1;
+    }
+
+    public int find(byte[] data, int from, int to) {
+        int length = pattern.length;
+        if (length == 0) {
+            return from <= to ? from : -1;
+        }
+        byte last = pattern[length - 1];
+        int i = from + length - 1;
+        while (i < to) {
+            byte b = data[i];
+            if (b == last && startsWith(data, i - length + 1)) {
+                return i - length + 1;
+            }
+            i += shift[b & 0xff];
+        }
+        return -1;
+    }
+
+    private boolean startsWith(byte[] data, int offset) {
+        for (int j = pattern.length - 2; j >= 0; j--) {
+            if (data[offset + j] != pattern[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean startsWith(ByteBuffer data, int offset) {
+        for (int j = pattern.length - 2; j >= 0; j--) {
+            if (data.get(offset + j) != pattern[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean matches(ByteBuffer data, int start, int end) {
+        return true;
+    }
+
+    @Override
+    public byte[] requiredLiteral() {
+        return pattern.clone();
+    }
+}
@@ -0,0 +1,421 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams lines appended to plain log files to their followers as server-sent events (like {@code tail -f}).
+ * <p>
+ * A single polling thread watches all followed files. Each file is read once per poll, no matter how many
+ * followers it has, and the resulting event is handed to every follower that is up to date. Followers that start
+ * further back (e.g. when reconnecting with {@code Last-Event-ID}) catch up one chunk per poll. The id of every
+ * event is the byte offset behind its last line, so a follower can resume exactly there.
+ * <p>
+ * Only complete lines are sent. When a file is truncated or replaced by a new file (log rotation), following
+ * continues at the start of the new content after a {@code rotate} event. Events are written to the followers on a
+ * few delivery threads, only as far as a connection accepts them without blocking; the rest waits until the
+ * connection is writable again. A follower that falls too far behind, or whose connection does not accept anything
+ * for longer than the write timeout, is disconnected instead of being buffered without limit.
+ */
+public class LogFollower implements Closeable {
+
+    public static final long DEFAULT_POLL_MILLIS = 500;
+    public static final long DEFAULT_WRITE_TIMEOUT_MILLIS = 30000;
+
+    static final int CHUNK_SIZE = 64 * 1024;
+    private static final long HEARTBEAT_MILLIS = 15000;
+    private static final int MAX_PENDING_EVENTS = 64;
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ROTATE = "event: rotate\ndata:\n\n".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Connection of a single follower.
+     */
+    public interface Sink {
+        /**
+         * @return whether an event can be sent without blocking; if not, the connection has to call
+         * {@link Follower#writePossible()} once it is writable again
+         */
+        boolean isReady();
+
+        /**
+         * Writes and flushes an event without blocking.
+         */
+        void send(byte[] event) throws IOException;
+
+        /**
+         * Ends the connection, called when the follower cannot keep up.
+         */
+        void close();
+    }
+
+    private final ScheduledExecutorService poller;
+    private final ExecutorService delivery;
+    private final long writeTimeoutMillis;
+    // only accessed by the polling thread
+    private final Map<Path, FollowedFile> files = new HashMap<>();
+
+    public LogFollower(long pollMillis) {
+        this(pollMillis, DEFAULT_WRITE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param writeTimeoutMillis time after which a follower whose connection does not accept events is disconnected
+     */
+    public LogFollower(long pollMillis, long writeTimeoutMillis) {
+        this.writeTimeoutMillis = writeTimeoutMillis;
+        poller = Executors.newSingleThreadScheduledExecutor(daemon("logview-follow"));
+        delivery = Executors.newFixedThreadPool(2, daemon("logview-follow-delivery"));
+        poller.scheduleWithFixedDelay(this::poll, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Starts following the file.
+     *
+     * @param offset position of the first line to send, usually the start of the last few lines or the id of the
+     *               last event a reconnecting follower received
+     * @return the follower, to be cancelled when the connection is closed
+     */
+    public Follower follow(Path file, long offset, Sink sink) {
+        Follower follower = new Follower(file.toAbsolutePath(), offset, sink);
+        poller.execute(() -> files.computeIfAbsent(follower.file, FollowedFile::new).add(follower));
+        return follower;
+    }
+
+    /**
+     * @return number of files currently followed
+     */
+    public int getFollowedFiles() {
+        try {
+            return poller.submit(files::size).get();
+        } catch (Exception e) {
+            throw new IllegalStateException("unable to count followed files", e);
+        }
+    }
+
+    /**
+     * Stops following, the connections of all followers are ended.
+     */
+    @Override
+    public synchronized void close() {
+        if (poller.isShutdown()) {
+            return;
+        }
+        // runs after a poll in progress, later polls are cancelled by the shutdown
+        poller.execute(() -> {
+            for (FollowedFile followedFile : files.values()) {
+                followedFile.closeChannel();
+                for (Follower follower : followedFile.followers) {
+                    follower.cancel();
+                    follower.sink.close();
+                }
+            }
+            files.clear();
+        });
+        poller.shutdown();
+        delivery.shutdownNow();
+    }
+
+    private void poll() {
+        List<Path> unfollowed = new ArrayList<>();
+        for (FollowedFile followedFile : files.values()) {
+            try {
+                followedFile.poll();
+            } catch (IOException | RuntimeException e) {
+                // file is (temporarily) not readable, e.g. in the middle of a rotation
+                followedFile.closeChannel();
+            }
+            if (followedFile.followers.isEmpty()) {
+                followedFile.closeChannel();
+                unfollowed.add(followedFile.file);
+            }
+        }
+        unfollowed.forEach(files::remove);
+    }
+
+    private class FollowedFile {
+        private final Path file;
+        private final List<Follower> followers = new ArrayList<>();
+        private FileChannel channel;
+        private Object fileKey;
+        private long position = -1;
+
+        FollowedFile(Path file) {
+            this.file = file;
+        }
+
+        void add(Follower follower) {
+            if (position < 0) {
+                position = follower.offset;
+            }
+            else if (follower.offset > position) {
+                follower.offset = position;
+            }
+            followers.add(follower);
+        }
+
+        void poll() throws IOException {
+            long now = System.currentTimeMillis();
+            for (Follower follower : followers) {
+                if (follower.isStalled(now)) {
+                    follower.cancel();
+                    follower.sink.close();
+                }
+            }
+            followers.removeIf(follower -> follower.cancelled.get());
+            if (followers.isEmpty()) {
+                return;
+            }
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                // rotated away, wait for the new file
+                return;
+            }
+            long size = attributes.size();
+            if (channel == null || !Objects.equals(fileKey, attributes.fileKey()) || size < position) {
+                open(attributes);
+            }
+            if (position < size) {
+                Chunk chunk = read(position, size);
+                if (chunk != null) {
+                    for (Follower follower : followers) {
+                        if (follower.offset == position) {
+                            follower.deliver(chunk.event, chunk.end, now);
+                        }
+                    }
+                    position = chunk.end;
+                }
+            }
+            for (Follower follower : followers) {
+                if (follower.offset < position && follower.pending.get() < MAX_PENDING_EVENTS / 2) {
+                    // catch up separately, one chunk per poll
+                    Chunk chunk = read(follower.offset, position);
+                    if (chunk != null) {
+                        follower.deliver(chunk.event, chunk.end, now);
+                    }
+                }
+                else if (now - follower.lastSent >= HEARTBEAT_MILLIS) {
+                    // keeps proxies from closing the connection and detects followers that went away
+                    follower.deliver(HEARTBEAT, follower.offset, now);
+                }
+            }
+        }
+
+        private void open(BasicFileAttributes attributes) throws IOException {
+            boolean replaced = fileKey != null && !Objects.equals(fileKey, attributes.fileKey());
+            boolean truncated = position > attributes.size();
+            closeChannel();
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            fileKey = attributes.fileKey();
+            if (replaced || truncated) {
+                position = 0;
+                long now = System.currentTimeMillis();
+                for (Follower follower : followers) {
+                    follower.deliver(ROTATE, 0, now);
+                }
+            }
+        }
+
+        /**
+         * Reads the complete lines starting at {@code from}, at most {@link #CHUNK_SIZE} bytes unless a single line
+         * is longer.
+         *
+         * @return the lines as event, or null if no line is complete yet
+         */
+        private Chunk read(long from, long to) throws IOException {
+            int length = (int) Math.min(to - from, CHUNK_SIZE);
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining() && channel.read(buffer, from + buffer.position()) > 0) {
+                // read until complete
+            }
+            int end = buffer.position();
+            while (end > 0 && buffer.get(end - 1) != '\n') {
+                end--;
+            }
+            if (end == 0) {
+                if (buffer.position() < CHUNK_SIZE) {
+                    return null;
+                }
+                // a single line longer than a chunk is sent in parts
+                end = buffer.position();
+            }
+            return new Chunk(event(buffer.array(), end, from + end), from + end);
+        }
+
+        void closeChannel() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // nothing left to do
+                }
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * Formats lines as event, every line becomes a data field.
+     */
+    static byte[] event(byte[] lines, int length, long id) {
+        ByteArrayOutputStream event = new ByteArrayOutputStream(length + length / 8 + 32);
+        byte[] header = ("id: " + id + "\n").getBytes(StandardCharsets.UTF_8);
+        event.write(header, 0, header.length);
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && lines[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd > lineStart && lines[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+            event.write('d');
+            event.write('a');
+            event.write('t');
+            event.write('a');
+            event.write(':');
+            event.write(' ');
+            event.write(lines, lineStart, contentEnd - lineStart);
+            event.write('\n');
+            lineStart = lineEnd + 1;
+        }
+        event.write('\n');
+        return event.toByteArray();
+    }
+
+    private static class Chunk {
+        final byte[] event;
+        final long end;
+
+        Chunk(byte[] event, long end) {
+            this.event = event;
+            this.end = end;
+        }
+    }
+
+    public class Follower {
+        private final Path file;
+        private final Sink sink;
+        private final Queue<byte[]> events = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final AtomicBoolean resumed = new AtomicBoolean();
+        // time since the connection has not accepted events, or 0
+        private volatile long stalledSince;
+        // only accessed by the polling thread
+        private long offset;
+        private long lastSent;
+
+        Follower(Path file, long offset, Sink sink) {
+            this.file = file;
+            this.offset = offset;
+            this.sink = sink;
+            this.lastSent = System.currentTimeMillis();
+        }
+
+        /**
+         * Stops following, called when the connection was closed.
+         */
+        public void cancel() {
+            cancelled.set(true);
+        }
+
+        /**
+         * Continues sending pending events, called when the connection is writable again.
+         */
+        public void writePossible() {
+            resumed.set(true);
+            scheduleDrain();
+        }
+
+        boolean isStalled(long now) {
+            long since = stalledSince;
+            return since > 0 && now - since > writeTimeoutMillis;
+        }
+
+        void deliver(byte[] event, long next, long now) {
+            offset = next;
+            lastSent = now;
+            if (cancelled.get()) {
+                return;
+            }
+            if (pending.incrementAndGet() > MAX_PENDING_EVENTS) {
+                cancel();
+                sink.close();
+                return;
+            }
+            events.add(event);
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                delivery.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            resumed.set(false);
+            try {
+                while (!events.isEmpty()) {
+                    if (cancelled.get()) {
+                        events.clear();
+                        break;
+                    }
+                    if (!sink.isReady()) {
+                        // continued by writePossible()
+                        if (stalledSince == 0) {
+                            stalledSince = System.currentTimeMillis();
+                        }
+                        break;
+                    }
+                    stalledSince = 0;
+                    pending.decrementAndGet();
+                    sink.send(events.poll());
+                }
+            } catch (IOException | RuntimeException e) {
+                cancel();
+                sink.close();
+            }
+            draining.set(false);
+            // the connection may have become writable before draining was reset
+            if (!events.isEmpty() && (resumed.get() || stalledSince == 0)) {
+                scheduleDrain();
+            }
+        }
+    }
+}
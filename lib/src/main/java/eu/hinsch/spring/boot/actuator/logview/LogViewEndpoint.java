@@ -1,52 +1,139 @@
 package eu.hinsch.spring.boot.actuator.logview;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import eu.hinsch.spring.boot.actuator.logview.LogViewEndpointAutoconfig.EndpointConfiguration;
 import freemarker.template.Configuration;
+import freemarker.template.DefaultObjectWrapperBuilder;
+import freemarker.template.Template;
 import freemarker.template.TemplateException;
-import org.apache.commons.io.IOUtils;
 import org.springframework.boot.actuate.endpoint.Endpoint;
 import org.springframework.boot.actuate.endpoint.mvc.MvcEndpoint;
 import org.springframework.http.MediaType;
-import org.springframework.ui.Model;
-import org.springframework.ui.freemarker.FreeMarkerTemplateUtils;
 import org.springframework.util.Assert;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Collections;
-import java.util.Comparator;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
 
 import static java.util.Arrays.asList;
-import static java.util.stream.Collectors.toList;
 
 /**
  * Created by lh on 23/02/15.
  */
-public class LogViewEndpoint implements MvcEndpoint{
+public class LogViewEndpoint implements MvcEndpoint, Closeable {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Logview-Next-Cursor";
+    public static final String SCANNED_BYTES_HEADER = "X-Logview-Scanned-Bytes";
+    public static final String EVENT_STREAM_VALUE = "text/event-stream";
+    public static final long SENDFILE_MIN_LENGTH = 48 * 1024;
+    public static final String DEFAULT_ROTATED_FILE_PATTERN = ".*\\d{4}-\\d{2}-\\d{2}.*";
+    public static final long DEFAULT_ROTATED_MAX_AGE = 365 * 24 * 60 * 60;
+
+    private static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+    // event ids are byte offsets, anything else is ignored like a missing header
+    private static final Pattern LAST_EVENT_ID_PATTERN = Pattern.compile("\\d{1,18}");
 
     private final List<FileProvider> fileProviders;
     private final Configuration freemarkerConfig;
+    private volatile Template listTemplate;
     private final String loggingPath;
     private final List<String> stylesheets;
+    private final OrderedParallelSearch parallelSearch;
+    private final TrigramIndex searchIndex;
+    private final LogFollower logFollower;
+    private final ZipFileCache zipFileCache;
+    private final ArchiveListingCache archiveListingCache;
+    private final TarGzIndexCache tarGzIndexCache;
+    private final ResponseCompression compression;
+    private final Pattern rotatedFilePattern;
+    private final long rotatedMaxAge;
 
     public LogViewEndpoint(String loggingPath, List<String> stylesheets) {
+        this(loggingPath, defaultConfiguration(stylesheets));
+    }
+
+    public LogViewEndpoint(String loggingPath, EndpointConfiguration configuration) {
         this.loggingPath = loggingPath;
-        this.stylesheets = stylesheets;
-        fileProviders = asList(new FileSystemFileProvider(),
-                new ZipArchiveFileProvider(),
-                new TarGzArchiveFileProvider());
+        this.stylesheets = configuration.getStylesheets();
+        parallelSearch = new OrderedParallelSearch(Math.max(1, configuration.getSearchThreads()),
+                configuration.getSearchMaxBufferedBytes());
+        searchIndex = configuration.isSearchIndexEnabled()
+                ? new TrigramIndex(Paths.get(configuration.getSearchIndexPath()))
+                : null;
+        logFollower = new LogFollower(configuration.getFollowPollMillis() > 0
+                ? configuration.getFollowPollMillis()
+                : LogFollower.DEFAULT_POLL_MILLIS);
+        zipFileCache = new ZipFileCache(configuration.getZipCacheSize() > 0
+                ? configuration.getZipCacheSize()
+                : ZipFileCache.DEFAULT_MAX_OPEN_FILES);
+        archiveListingCache = new ArchiveListingCache(
+                configuration.getListingCacheMaxArchives() > 0
+                        ? configuration.getListingCacheMaxArchives()
+                        : ArchiveListingCache.DEFAULT_MAX_ARCHIVES,
+                configuration.getListingCacheMaxEntries() > 0
+                        ? configuration.getListingCacheMaxEntries()
+                        : ArchiveListingCache.DEFAULT_MAX_ENTRIES,
+                configuration.getListingCachePath() != null ? Paths.get(configuration.getListingCachePath()) : null);
+        tarGzIndexCache = new TarGzIndexCache(configuration.getTarGzIndexCacheSize() > 0
+                ? configuration.getTarGzIndexCacheSize()
+                : TarGzIndexCache.DEFAULT_MAX_INDEXES);
+        compression = new ResponseCompression(configuration.getCompressionLevel());
+        String rotatedFilePattern = configuration.getRotatedFilePattern() != null
+                ? configuration.getRotatedFilePattern()
+                : DEFAULT_ROTATED_FILE_PATTERN;
+        this.rotatedFilePattern = !rotatedFilePattern.isEmpty() ? Pattern.compile(rotatedFilePattern) : null;
+        rotatedMaxAge = configuration.getRotatedMaxAge() > 0
+                ? configuration.getRotatedMaxAge()
+                : DEFAULT_ROTATED_MAX_AGE;
+        fileProviders = asList(new FileSystemFileProvider(configuration.getMmapThreshold(),
+                        configuration.getListingTtlMillis() > 0
+                                ? configuration.getListingTtlMillis()
+                                : DirectoryListingCache.DEFAULT_TTL_MILLIS),
+                new ZipArchiveFileProvider(zipFileCache),
+                new TarGzArchiveFileProvider(archiveListingCache, tarGzIndexCache),
+                new CompressedFileProvider());
         freemarkerConfig = new Configuration(Configuration.DEFAULT_INCOMPATIBLE_IMPROVEMENTS);
         freemarkerConfig.setClassForTemplateLoading(this.getClass(), "/templates");
+        freemarkerConfig.setLocalizedLookup(false);
+        freemarkerConfig.setDefaultEncoding("UTF-8");
+        // shared wrapper, which keeps the introspection of FileEntry instead of repeating it per request
+        freemarkerConfig.setObjectWrapper(new DefaultObjectWrapperBuilder(Configuration.VERSION_2_3_21).build());
+    }
+
+    private static EndpointConfiguration defaultConfiguration(List<String> stylesheets) {
+        EndpointConfiguration configuration = new EndpointConfiguration();
+        configuration.setStylesheets(stylesheets);
+        return configuration;
     }
 
     @RequestMapping
@@ -55,27 +142,119 @@ public class LogViewEndpoint implements MvcEndpoint{
     }
 
     @RequestMapping("/")
-    @ResponseBody
-    public String list(Model model, // TODO model should no longer be injected
-                       @RequestParam(required = false, defaultValue = "FILENAME") SortBy sortBy,
-                       @RequestParam(required = false, defaultValue = "false") boolean desc,
-                       @RequestParam(required = false) String base) throws IOException, TemplateException {
+    public void list(@RequestParam(required = false, defaultValue = "FILENAME") SortBy sortBy,
+                     @RequestParam(required = false, defaultValue = "false") boolean desc,
+                     @RequestParam(required = false) String base,
+                     @RequestParam(required = false, defaultValue = "0") int offset,
+                     @RequestParam(required = false, defaultValue = "1000") int limit,
+                     HttpServletRequest request,
+                     HttpServletResponse response) throws IOException, TemplateException {
         Path currentFolder = loggingPath(base);
-        securityCheck(currentFolder, null);
+        List<FileEntry> sortedFiles = listPage(currentFolder, sortBy, desc, offset, limit);
+        // the page shows modification times relative to now, so it is only reused within the same minute
+        ContentVersion version = ContentVersion.of(sortedFiles, Files.getLastModifiedTime(currentFolder).toMillis(),
+                "html:" + System.currentTimeMillis() / 60000);
+        response.setHeader("Cache-Control", "private, no-cache");
+        if (version.checkNotModified(null, false, request, response)) {
+            return;
+        }
+        Map<String, Object> model = listModel(currentFolder, base, sortBy, desc, offset, limit, sortedFiles);
+        response.setContentType(MediaType.TEXT_HTML_VALUE + ";charset=UTF-8");
+        // rendered straight into the response, which sends the page while it is rendered
+        listTemplate().process(model, response.getWriter());
+    }
 
+    Map<String, Object> listModel(SortBy sortBy, boolean desc, String base, int offset, int limit)
+            throws IOException {
+        Path currentFolder = loggingPath(base);
+        return listModel(currentFolder, base, sortBy, desc, offset, limit,
+                listPage(currentFolder, sortBy, desc, offset, limit));
+    }
 
-        List<FileEntry> files = getFileProvider(currentFolder).getFileEntries(currentFolder);
-        List<FileEntry> sortedFiles = sortFiles(files, sortBy, desc);
+    private Map<String, Object> listModel(Path currentFolder, String base, SortBy sortBy, boolean desc, int offset,
+                                          int limit, List<FileEntry> sortedFiles) throws IOException {
+        boolean hasMore = sortedFiles.size() > limit;
 
-        model.addAttribute("sortBy", sortBy);
-        model.addAttribute("desc", desc);
-        model.addAttribute("files", sortedFiles);
-        model.addAttribute("currentFolder", currentFolder.toAbsolutePath().toString());
-        model.addAttribute("base", base != null ? URLEncoder.encode(base, "UTF-8") : "");
-        model.addAttribute("parent", getParent(currentFolder));
-        model.addAttribute("stylesheets", stylesheets);
+        Map<String, Object> model = new HashMap<>();
+        model.put("sortBy", sortBy);
+        model.put("desc", desc);
+        model.put("files", hasMore ? sortedFiles.subList(0, limit) : sortedFiles);
+        model.put("offset", offset);
+        model.put("limit", limit);
+        model.put("hasMore", hasMore);
+        model.put("currentFolder", currentFolder.toAbsolutePath().toString());
+        model.put("base", base != null ? URLEncoder.encode(base, "UTF-8") : "");
+        model.put("searchBase", base != null ? base : "");
+        model.put("parent", getParent(currentFolder));
+        model.put("stylesheets", stylesheets);
+        return model;
+    }
 
-        return FreeMarkerTemplateUtils.processTemplateIntoString(freemarkerConfig.getTemplate("logview.ftl"), model);
+    /**
+     * @return the listing template, parsed on first use
+     */
+    private Template listTemplate() throws IOException {
+        Template template = listTemplate;
+        if (template == null) {
+            template = freemarkerConfig.getTemplate("logview.ftl");
+            listTemplate = template;
+        }
+        return template;
+    }
+
+    /**
+     * Writes the listing as a JSON object, entry by entry.
+     */
+    @RequestMapping(value = "/", params = "format=json")
+    public void listJson(@RequestParam(required = false, defaultValue = "FILENAME") SortBy sortBy,
+                         @RequestParam(required = false, defaultValue = "false") boolean desc,
+                         @RequestParam(required = false) String base,
+                         @RequestParam(required = false, defaultValue = "0") int offset,
+                         @RequestParam(required = false, defaultValue = "1000") int limit,
+                         @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        Path currentFolder = loggingPath(base);
+        List<FileEntry> sortedFiles = listPage(currentFolder, sortBy, desc, offset, limit);
+
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        String encoding = compression.negotiate(acceptEncoding, response);
+        ContentVersion version = ContentVersion.of(sortedFiles, Files.getLastModifiedTime(currentFolder).toMillis(),
+                "json");
+        response.setHeader("Cache-Control", "private, no-cache");
+        if (version.checkNotModified(encoding, true, request, response)) {
+            return;
+        }
+        try (OutputStream outputStream = compression.compress(encoding, response);
+             JsonGenerator generator = JsonOutput.generator(outputStream)) {
+            generator.writeStartObject();
+            generator.writeStringField("currentFolder", currentFolder.toAbsolutePath().toString());
+            generator.writeNumberField("offset", offset);
+            generator.writeBooleanField("hasMore", sortedFiles.size() > limit);
+            generator.writeArrayFieldStart("files");
+            for (FileEntry file : sortedFiles.subList(0, Math.min(limit, sortedFiles.size()))) {
+                generator.writeStartObject();
+                generator.writeStringField("filename", file.getDisplayFilename());
+                generator.writeStringField("fileType", file.getFileType().name());
+                generator.writeNumberField("size", file.getSize());
+                generator.writeNumberField("modified", file.getModified().toMillis());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * @return the entries of the page, plus the first entry of the next page if there is one
+     */
+    private List<FileEntry> listPage(Path currentFolder, SortBy sortBy, boolean desc, int offset, int limit)
+            throws IOException {
+        securityCheck(currentFolder, null);
+        Assert.isTrue(offset >= 0, "offset must not be negative");
+        Assert.isTrue(limit > 0, "limit must be positive");
+        // one more entry than shown tells whether there is a next page
+        return getFileProvider(currentFolder).getFileEntries(currentFolder, sortBy, desc, offset, limit + 1);
     }
 
     private FileProvider getFileProvider(Path folder) {
@@ -101,74 +280,445 @@ public class LogViewEndpoint implements MvcEndpoint{
         return base != null ? Paths.get(loggingPath, base) : Paths.get(loggingPath);
     }
 
-    private List<FileEntry> sortFiles(List<FileEntry> files, SortBy sortBy, boolean desc) {
-        Comparator<FileEntry> comparator = null;
-        switch (sortBy) {
-            case FILENAME:
-                comparator = (a, b) -> a.getFilename().compareTo(b.getFilename());
-                break;
-            case SIZE:
-                comparator = (a, b) -> Long.compare(a.getSize(), b.getSize());
-                break;
-            case MODIFIED:
-                comparator = (a, b) -> Long.compare(a.getModified().toMillis(), b.getModified().toMillis());
-                break;
-        }
-        List<FileEntry> sortedFiles = files.stream().sorted(comparator).collect(toList());
-
-        if (desc) {
-            Collections.reverse(sortedFiles);
-        }
-        return sortedFiles;
-    }
-
     @RequestMapping("/view")
     public void view(@RequestParam String filename,
                      @RequestParam(required = false) String base,
                      @RequestParam(required = false) Integer tailLines,
+                     @RequestParam(required = false) Long tailBytes,
+                     @RequestParam(required = false) String from,
+                     @RequestParam(required = false) String to,
+                     @RequestParam(required = false) Long fromLine,
+                     @RequestParam(required = false, defaultValue = "500") int lines,
+                     @RequestHeader(value = "Range", required = false) String range,
+                     @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding,
+                     HttpServletRequest request,
                      HttpServletResponse response) throws IOException {
 
         Path path = loggingPath(base);
         securityCheck(path, filename);
+        TimeRange timeRange = TimeRange.of(from, to);
+        checkViewOptions(timeRange, tailLines, tailBytes, fromLine);
         response.setContentType(MediaType.TEXT_PLAIN_VALUE);
         FileProvider fileProvider = getFileProvider(path);
-        if (tailLines != null) {
-            fileProvider.tailContent(path, filename, response.getOutputStream(), tailLines);
+        String encoding = compression.negotiate(acceptEncoding, response);
+        boolean wholeFile = timeRange == null && tailLines == null && tailBytes == null && fromLine == null;
+        if (wholeFile && range != null && !matchesIfRange(fileProvider, path, filename, request)) {
+            // the client's partial copy is outdated, so it gets the whole current content instead
+            range = null;
+        }
+        if (wholeFile && range != null && honorsRange(fileProvider, path, filename, encoding)) {
+            // ranges refer to the uncompressed content, so a range request is answered (and tagged) uncompressed
+            encoding = null;
+        }
+        if (checkNotModified(fileProvider, path, filename, encoding, request, response)) {
+            return;
+        }
+        if (wholeFile) {
+            streamContent(fileProvider, path, filename, range, encoding, request, response);
+            return;
+        }
+        try (OutputStream outputStream = compression.compress(encoding, response)) {
+            writeContent(fileProvider, path, filename, timeRange, tailLines, tailBytes, fromLine, lines, outputStream);
+        }
+    }
+
+    /**
+     * Writes the lines of the file (or the selected part of it) as a JSON array of strings, line by line.
+     */
+    @RequestMapping(value = "/view", params = "format=json")
+    public void viewJson(@RequestParam String filename,
+                         @RequestParam(required = false) String base,
+                         @RequestParam(required = false) Integer tailLines,
+                         @RequestParam(required = false) Long tailBytes,
+                         @RequestParam(required = false) String from,
+                         @RequestParam(required = false) String to,
+                         @RequestParam(required = false) Long fromLine,
+                         @RequestParam(required = false, defaultValue = "500") int lines,
+                         @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        Path path = loggingPath(base);
+        securityCheck(path, filename);
+        TimeRange timeRange = TimeRange.of(from, to);
+        checkViewOptions(timeRange, tailLines, tailBytes, fromLine);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        FileProvider fileProvider = getFileProvider(path);
+        String encoding = compression.negotiate(acceptEncoding, response);
+        if (checkNotModified(fileProvider, path, filename, encoding, request, response)) {
+            return;
+        }
+        try (OutputStream outputStream = compression.compress(encoding, response);
+             JsonGenerator generator = JsonOutput.generator(outputStream)) {
+            generator.writeStartArray();
+            try (OutputStream lineStream = JsonOutput.lines(generator)) {
+                writeContent(fileProvider, path, filename, timeRange, tailLines, tailBytes, fromLine, lines,
+                        lineStream);
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Sets the validators of the file's content and answers conditional requests without reading it. Rotated files
+     * no longer change, so clients may keep them without asking again.
+     *
+     * @return whether the response is complete
+     */
+    private boolean checkNotModified(FileProvider fileProvider, Path path, String filename, String encoding,
+                                     HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ContentVersion version = fileProvider.contentVersion(path, filename);
+        if (version == null) {
+            return false;
+        }
+        response.setHeader("Cache-Control", isRotated(path, filename, version)
+                ? "private, max-age=" + rotatedMaxAge
+                : "private, no-cache");
+        return version.checkNotModified(encoding, true, request, response);
+    }
+
+    private static boolean matchesIfRange(FileProvider fileProvider, Path path, String filename,
+                                          HttpServletRequest request) throws IOException {
+        ContentVersion version = fileProvider.contentVersion(path, filename);
+        return version != null ? version.matchesIfRange(request) : request.getHeader("If-Range") == null;
+    }
+
+    private boolean isRotated(Path path, String filename, ContentVersion version) {
+        if (rotatedFilePattern == null) {
+            return false;
+        }
+        boolean rotatedName = rotatedFilePattern.matcher(filename).matches()
+                || !Files.isDirectory(path) && rotatedFilePattern.matcher(path.getFileName().toString()).matches();
+        // a file named by date is still written to on that day
+        long startOfDay = LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return rotatedName && version.getLastModified() < startOfDay;
+    }
+
+    private static void checkViewOptions(TimeRange timeRange, Integer tailLines, Long tailBytes, Long fromLine) {
+        Assert.isTrue((timeRange != null ? 1 : 0) + (tailLines != null ? 1 : 0) + (tailBytes != null ? 1 : 0)
+                + (fromLine != null ? 1 : 0) <= 1, "only one of tailLines, tailBytes, fromLine and from/to can be used");
+        Assert.isTrue(fromLine == null || fromLine >= 1, "fromLine starts with line 1");
+    }
+
+    private void writeContent(FileProvider fileProvider, Path path, String filename, TimeRange timeRange,
+                              Integer tailLines, Long tailBytes, Long fromLine, int lines, OutputStream outputStream)
+            throws IOException {
+        if (timeRange != null) {
+            fileProvider.streamContent(path, filename, outputStream, timeRange);
+        }
+        else if (tailLines != null) {
+            fileProvider.tailContent(path, filename, outputStream, tailLines);
+        }
+        else if (tailBytes != null) {
+            fileProvider.tailBytes(path, filename, outputStream, tailBytes);
+        }
+        else if (fromLine != null) {
+            fileProvider.streamLines(path, filename, outputStream, fromLine - 1, lines);
         }
         else {
-            fileProvider.streamContent(path, filename, response.getOutputStream());
+            fileProvider.streamContent(path, filename, outputStream);
         }
     }
 
-    @RequestMapping("/search")
-    public void search(@RequestParam String term, HttpServletResponse response) throws IOException {
-        Path folder = loggingPath(null);
-        List<FileEntry> files = getFileProvider(folder).getFileEntries(folder);
-        List<FileEntry> sortedFiles = sortFiles(files, SortBy.MODIFIED, false);
+    private void streamContent(FileProvider fileProvider, Path path, String filename, String rangeHeader,
+                               String encoding, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        Path gzipFile = ResponseCompression.GZIP.equals(encoding) ? fileProvider.gzipFile(path, filename) : null;
+        if (gzipFile != null) {
+            // already compressed as the client wants it, so the file is sent as is
+            long size = Files.size(gzipFile);
+            response.setHeader("Content-Encoding", ResponseCompression.GZIP);
+            response.setHeader("Content-Length", String.valueOf(size));
+            if (!sendFile(gzipFile, 0, size, request)) {
+                Files.copy(gzipFile, response.getOutputStream());
+            }
+            return;
+        }
+        long length = fileProvider.rangeLength(path, filename);
+        if (length < 0 || encoding != null) {
+            try (OutputStream outputStream = compression.compress(encoding, response)) {
+                fileProvider.streamContent(path, filename, outputStream);
+            }
+            return;
+        }
+        response.setHeader("Accept-Ranges", "bytes");
+        List<ByteRange> ranges = rangeHeader != null ? ByteRange.parse(rangeHeader, length) : null;
+        if (ranges == null) {
+            // only the current length is sent, so the content matches its Content-Length even if the file grows
+            response.setHeader("Content-Length", String.valueOf(length));
+            if (!sendFile(fileProvider.plainFile(path, filename), 0, length, request)) {
+                fileProvider.streamContent(path, filename, response.getOutputStream(), 0, length);
+            }
+        }
+        else if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader("Content-Range", "bytes */" + length);
+        }
+        else if (ranges.size() == 1) {
+            ByteRange byteRange = ranges.get(0);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader("Content-Range", byteRange.contentRange(length));
+            response.setHeader("Content-Length", String.valueOf(byteRange.getLength()));
+            if (!sendFile(fileProvider.plainFile(path, filename), byteRange.getOffset(), byteRange.getLength(),
+                    request)) {
+                fileProvider.streamContent(path, filename, response.getOutputStream(), byteRange.getOffset(),
+                        byteRange.getLength());
+            }
+        }
+        else {
+            streamMultipleRanges(fileProvider, path, filename, ranges, length, response);
+        }
+    }
 
-        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
-        ServletOutputStream outputStream = response.getOutputStream();
+    /**
+     * @return whether a range request of the file is answered with the requested ranges, rather than with the
+     * whole content (like a .gz file sent as stored)
+     */
+    private static boolean honorsRange(FileProvider fileProvider, Path path, String filename, String encoding)
+            throws IOException {
+        return fileProvider.rangeLength(path, filename) >= 0
+                && !(ResponseCompression.GZIP.equals(encoding) && fileProvider.gzipFile(path, filename) != null);
+    }
 
-        sortedFiles.stream()
-                .filter(file -> file.getFileType().equals(FileType.FILE))
-                .forEach(file -> searchAndStreamFile(file, term, outputStream));
+    /**
+     * Leaves sending the part of the file to the container, if it supports sendfile (like Tomcat's NIO and APR
+     * connectors). The content is then copied by the kernel from the file to the socket once the request is
+     * handled. Small parts are written directly, where sendfile does not pay off.
+     *
+     * @param file file to send, or null if there is none
+     * @return whether the container sends the content
+     */
+    private static boolean sendFile(Path file, long offset, long length, HttpServletRequest request) {
+        if (file == null || length < SENDFILE_MIN_LENGTH
+                || !Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE))) {
+            return false;
+        }
+        request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, file.toAbsolutePath().toString());
+        request.setAttribute(SENDFILE_START_ATTRIBUTE, offset);
+        request.setAttribute(SENDFILE_END_ATTRIBUTE, offset + length);
+        return true;
     }
 
-    private void searchAndStreamFile(FileEntry fileEntry, String term, OutputStream outputStream) {
-        Path folder = loggingPath(null);
-        try {
-            List<String> lines = IOUtils.readLines(new FileInputStream(new File(folder.toFile().toString(), fileEntry.getFilename())))
-                    .stream()
-                    .filter(line -> line.contains(term))
-                    .map(line -> "[" + fileEntry.getFilename() + "] " + line)
-                    .collect(toList());
-            for (String line : lines) {
-                outputStream.write(line.getBytes());
-                outputStream.write(System.lineSeparator().getBytes());
+    private void streamMultipleRanges(FileProvider fileProvider, Path path, String filename, List<ByteRange> ranges,
+                                      long length, HttpServletResponse response) throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (ByteRange byteRange : ranges) {
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                    + "Content-Type: " + MediaType.TEXT_PLAIN_VALUE + "\r\n"
+                    + "Content-Range: " + byteRange.contentRange(length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + byteRange.getLength();
+        }
+        byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += end.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setHeader("Content-Length", String.valueOf(contentLength));
+        OutputStream outputStream = response.getOutputStream();
+        for (int i = 0; i < ranges.size(); i++) {
+            outputStream.write(partHeaders.get(i));
+            fileProvider.streamContent(path, filename, outputStream, ranges.get(i).getOffset(),
+                    ranges.get(i).getLength());
+        }
+        outputStream.write(end);
+    }
+
+    /**
+     * Streams lines appended to a plain file as server-sent events, starting with the last {@code tailLines} lines
+     * or, when reconnecting, behind the last received event.
+     */
+    @RequestMapping("/follow")
+    public void follow(@RequestParam String filename,
+                       @RequestParam(required = false) String base,
+                       @RequestParam(required = false, defaultValue = "10") int tailLines,
+                       HttpServletRequest request,
+                       HttpServletResponse response) throws IOException {
+        Path path = loggingPath(base);
+        securityCheck(path, filename);
+        Path file = path.resolve(filename);
+        Assert.isTrue(Files.isRegularFile(file) && Files.isDirectory(path), "only plain files can be followed");
+
+        String lastEventId = request.getHeader("Last-Event-ID");
+        long offset;
+        if (lastEventId != null && LAST_EVENT_ID_PATTERN.matcher(lastEventId).matches()) {
+            offset = Long.parseLong(lastEventId);
+        }
+        else {
+            try (MappedFileReader reader = new MappedFileReader(file)) {
+                offset = reader.tailOffset(tailLines);
             }
-        } catch (IOException e) {
-            throw new RuntimeException("error reading file", e);
         }
+
+        response.setContentType(EVENT_STREAM_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.flushBuffer();
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(0);
+        EventStreamSink sink = new EventStreamSink(asyncContext, response.getOutputStream());
+        // non-blocking output, so a stalled connection never holds up a delivery thread
+        response.getOutputStream().setWriteListener(sink);
+        asyncContext.addListener(sink);
+        sink.follower = logFollower.follow(file, offset, sink);
+    }
+
+    private static class EventStreamSink implements LogFollower.Sink, WriteListener, AsyncListener {
+        private final AsyncContext asyncContext;
+        private final ServletOutputStream outputStream;
+        private volatile LogFollower.Follower follower;
+
+        EventStreamSink(AsyncContext asyncContext, ServletOutputStream outputStream) {
+            this.asyncContext = asyncContext;
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        public boolean isReady() {
+            return outputStream.isReady();
+        }
+
+        @Override
+        public void send(byte[] event) throws IOException {
+            outputStream.write(event);
+            if (outputStream.isReady()) {
+                outputStream.flush();
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                asyncContext.complete();
+            } catch (IllegalStateException e) {
+                // already completed by the container
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            // events are only sent once following started, so an earlier call can be ignored
+            if (follower != null) {
+                follower.writePossible();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            cancel();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            cancel();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            cancel();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            cancel();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // nothing to do
+        }
+
+        private void cancel() {
+            if (follower != null) {
+                follower.cancel();
+            }
+        }
+    }
+
+    @RequestMapping("/search")
+    public void search(@RequestParam String term,
+                       SearchOptions options,
+                       @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding,
+                       HttpServletResponse response) throws IOException {
+        search(term, options, false, acceptEncoding, response);
+    }
+
+    /**
+     * Writes every result as a newline delimited JSON record as soon as it is found.
+     */
+    @RequestMapping(value = "/search", params = "format=json")
+    public void searchJson(@RequestParam String term,
+                           SearchOptions options,
+                           @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding,
+                           HttpServletResponse response) throws IOException {
+        search(term, options, true, acceptEncoding, response);
+    }
+
+    private void search(String term, SearchOptions options, boolean json, String acceptEncoding,
+                        HttpServletResponse response) throws IOException {
+        Integer limit = options.getLimit();
+        Assert.isTrue(options.getCursor() == null || limit != null, "cursor can only be used together with limit");
+        Path folder = loggingPath(options.getBase());
+        securityCheck(folder, null);
+        LineMatcher matcher = options.isRegex() ? LineMatcher.regex(term) : LineMatcher.literal(term);
+        SearchPage page = limit != null ? new SearchPage(limit, options.getCursor()) : null;
+        SearchContext search = new SearchContext(matcher, folder, searchIndex, page,
+                TimeRange.of(options.getFrom(), options.getTo()), this::getFileProvider);
+        if (options.getDepth() != null) {
+            search.setMaxDepth(options.getDepth());
+        }
+        search.setFilePattern(options.getGlob());
+        search.setJson(json);
+        int context = options.getContext() != null ? options.getContext() : 0;
+        search.setContext(options.getBefore() != null ? options.getBefore() : context,
+                options.getAfter() != null ? options.getAfter() : context);
+        List<OrderedParallelSearch.Task> tasks = getFileProvider(folder).searchTasks(folder, search);
+
+        response.setContentType(json ? JsonOutput.NDJSON_VALUE : MediaType.TEXT_PLAIN_VALUE);
+        String encoding = compression.negotiate(acceptEncoding, response);
+        if (page == null) {
+            try (OutputStream outputStream = compression.compress(encoding, response)) {
+                parallelSearch.execute(tasks, outputStream);
+            }
+            return;
+        }
+
+        // a page is small, so it is collected to send cursor and statistics as headers before the content
+        ByteArrayOutputStream pageContent = new ByteArrayOutputStream();
+        for (OrderedParallelSearch.Task task : tasks) {
+            if (page.isFull()) {
+                break;
+            }
+            task.run(pageContent);
+        }
+        if (page.isCursorLost()) {
+            response.sendError(HttpServletResponse.SC_GONE, "file of the cursor no longer exists, restart the search");
+            return;
+        }
+        if (page.getNextCursor() != null) {
+            response.setHeader(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        response.setHeader(SCANNED_BYTES_HEADER, String.valueOf(page.getScannedBytes()));
+        try (OutputStream outputStream = compression.compress(encoding, response)) {
+            pageContent.writeTo(outputStream);
+        }
+    }
+
+    @RequestMapping("/stats")
+    @ResponseBody
+    public Map<String, Object> stats() throws IOException {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("searchBufferedBytes", parallelSearch.getBufferedBytes());
+        stats.put("followedFiles", logFollower.getFollowedFiles());
+        stats.put("zipFileCache", zipFileCache.getStatistics());
+        stats.put("archiveListingCache", archiveListingCache.getStatistics());
+        stats.put("tarGzIndexCache", tarGzIndexCache.getStatistics());
+        if (searchIndex != null) {
+            stats.put("searchIndex", searchIndex.getStatistics());
+        }
+        return stats;
     }
 
     private void securityCheck(Path base, String filename) {
@@ -182,6 +732,22 @@ public class LogViewEndpoint implements MvcEndpoint{
         }
     }
 
+    /**
+     * Stops all background threads, watches and open files, called by Spring when the context is closed (a
+     * {@code close} method is inferred as destroy method of the bean).
+     */
+    @Override
+    public void close() throws IOException {
+        logFollower.close();
+        parallelSearch.close();
+        for (FileProvider fileProvider : fileProviders) {
+            if (fileProvider instanceof Closeable) {
+                ((Closeable) fileProvider).close();
+            }
+        }
+        zipFileCache.close();
+    }
+
     @Override
     public String getPath() {
         return "/log";
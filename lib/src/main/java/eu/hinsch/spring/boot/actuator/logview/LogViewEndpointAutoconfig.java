@@ -25,29 +25,44 @@ public class LogViewEndpointAutoconfig {
     @Bean
     public LogViewEndpoint logViewEndpointWithDefaultFile(Environment environment, EndpointConfiguration configuration) {
         String logDirectory = new File(environment.getRequiredProperty(LOGGING_FILE)).getParentFile().getAbsolutePath();
-        return new LogViewEndpoint(logDirectory, configuration.getStylesheets());
+        return new LogViewEndpoint(logDirectory, configuration);
     }
 
     @ConditionalOnProperty(LOGGING_PATH)
     @ConditionalOnMissingBean(LogViewEndpoint.class)
     @Bean
     public LogViewEndpoint logViewEndpointWithDefaultPath(Environment environment, EndpointConfiguration configuration) {
-        return new LogViewEndpoint(environment.getRequiredProperty(LOGGING_PATH), configuration.getStylesheets());
+        return new LogViewEndpoint(environment.getRequiredProperty(LOGGING_PATH), configuration);
     }
 
     @ConditionalOnProperty(ENDPOINTS_LOGVIEW_PATH)
     @ConditionalOnMissingBean(LogViewEndpoint.class)
     @Bean
     public LogViewEndpoint logViewEndpointWithDeviatingPath(Environment environment, EndpointConfiguration configuration) {
-        return new LogViewEndpoint(configuration.getPath(), configuration.getStylesheets());
+        return new LogViewEndpoint(configuration.getPath(), configuration);
     }
 
     @Component
     @ConfigurationProperties(prefix = "endpoints.logview")
-    static class EndpointConfiguration {
+    public static class EndpointConfiguration {
         private List<String> stylesheets = asList("https://maxcdn.bootstrapcdn.com/bootstrap/3.3.2/css/bootstrap.min.css",
                 "https://maxcdn.bootstrapcdn.com/font-awesome/4.3.0/css/font-awesome.min.css");
         private String path;
+        private int searchThreads = Runtime.getRuntime().availableProcessors();
+        private int searchMaxBufferedBytes = 16 * 1024 * 1024;
+        private boolean searchIndexEnabled;
+        private String searchIndexPath = new File(System.getProperty("java.io.tmpdir"), "logview-index").getPath();
+        private long mmapThreshold = FileSystemFileProvider.DEFAULT_MMAP_THRESHOLD;
+        private long followPollMillis = LogFollower.DEFAULT_POLL_MILLIS;
+        private int zipCacheSize = ZipFileCache.DEFAULT_MAX_OPEN_FILES;
+        private int tarGzIndexCacheSize = TarGzIndexCache.DEFAULT_MAX_INDEXES;
+        private int listingCacheMaxArchives = ArchiveListingCache.DEFAULT_MAX_ARCHIVES;
+        private int listingCacheMaxEntries = ArchiveListingCache.DEFAULT_MAX_ENTRIES;
+        private String listingCachePath;
+        private long listingTtlMillis = DirectoryListingCache.DEFAULT_TTL_MILLIS;
+        private String rotatedFilePattern = LogViewEndpoint.DEFAULT_ROTATED_FILE_PATTERN;
+        private long rotatedMaxAge = LogViewEndpoint.DEFAULT_ROTATED_MAX_AGE;
+        private int compressionLevel = ResponseCompression.DEFAULT_LEVEL;
 
         public List<String> getStylesheets() {
             return stylesheets;
@@ -64,5 +79,125 @@ public class LogViewEndpointAutoconfig {
         public void setPath(String path) {
             this.path = path;
         }
+
+        public int getSearchThreads() {
+            return searchThreads;
+        }
+
+        public void setSearchThreads(int searchThreads) {
+            this.searchThreads = searchThreads;
+        }
+
+        public int getSearchMaxBufferedBytes() {
+            return searchMaxBufferedBytes;
+        }
+
+        public void setSearchMaxBufferedBytes(int searchMaxBufferedBytes) {
+            this.searchMaxBufferedBytes = searchMaxBufferedBytes;
+        }
+
+        public boolean isSearchIndexEnabled() {
+            return searchIndexEnabled;
+        }
+
+        public void setSearchIndexEnabled(boolean searchIndexEnabled) {
+            this.searchIndexEnabled = searchIndexEnabled;
+        }
+
+        public String getSearchIndexPath() {
+            return searchIndexPath;
+        }
+
+        public void setSearchIndexPath(String searchIndexPath) {
+            this.searchIndexPath = searchIndexPath;
+        }
+
+        public long getMmapThreshold() {
+            return mmapThreshold;
+        }
+
+        public void setMmapThreshold(long mmapThreshold) {
+            this.mmapThreshold = mmapThreshold;
+        }
+
+        public long getFollowPollMillis() {
+            return followPollMillis;
+        }
+
+        public void setFollowPollMillis(long followPollMillis) {
+            this.followPollMillis = followPollMillis;
+        }
+
+        public int getZipCacheSize() {
+            return zipCacheSize;
+        }
+
+        public void setZipCacheSize(int zipCacheSize) {
+            this.zipCacheSize = zipCacheSize;
+        }
+
+        public int getTarGzIndexCacheSize() {
+            return tarGzIndexCacheSize;
+        }
+
+        public void setTarGzIndexCacheSize(int tarGzIndexCacheSize) {
+            this.tarGzIndexCacheSize = tarGzIndexCacheSize;
+        }
+
+        public int getListingCacheMaxArchives() {
+            return listingCacheMaxArchives;
+        }
+
+        public void setListingCacheMaxArchives(int listingCacheMaxArchives) {
+            this.listingCacheMaxArchives = listingCacheMaxArchives;
+        }
+
+        public int getListingCacheMaxEntries() {
+            return listingCacheMaxEntries;
+        }
+
+        public void setListingCacheMaxEntries(int listingCacheMaxEntries) {
+            this.listingCacheMaxEntries = listingCacheMaxEntries;
+        }
+
+        public String getListingCachePath() {
+            return listingCachePath;
+        }
+
+        public void setListingCachePath(String listingCachePath) {
+            this.listingCachePath = listingCachePath;
+        }
+
+        public long getListingTtlMillis() {
+            return listingTtlMillis;
+        }
+
+        public void setListingTtlMillis(long listingTtlMillis) {
+            this.listingTtlMillis = listingTtlMillis;
+        }
+
+        public String getRotatedFilePattern() {
+            return rotatedFilePattern;
+        }
+
+        public void setRotatedFilePattern(String rotatedFilePattern) {
+            this.rotatedFilePattern = rotatedFilePattern;
+        }
+
+        public long getRotatedMaxAge() {
+            return rotatedMaxAge;
+        }
+
+        public void setRotatedMaxAge(long rotatedMaxAge) {
+            this.rotatedMaxAge = rotatedMaxAge;
+        }
+
+        public int getCompressionLevel() {
+            return compressionLevel;
+        }
+
+        public void setCompressionLevel(int compressionLevel) {
+            this.compressionLevel = compressionLevel;
+        }
     }
 }
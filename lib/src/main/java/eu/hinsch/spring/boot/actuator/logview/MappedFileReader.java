@@ -0,0 +1,103 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a plain file through memory mapped windows, so content is accessed in the page cache instead of being
+ * copied onto the heap first.
+ * <p>
+ * A single mapping is limited to 2GB, larger files are mapped in windows of at most {@link #WINDOW_SIZE} bytes.
+ * The file size is looked up again on every call, so content appended after opening is visible as well.
+ */
+public class MappedFileReader implements Closeable {
+
+    public static final int WINDOW_SIZE = 256 * 1024 * 1024;
+    public static final int TAIL_BLOCK_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+
+    public MappedFileReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Maps {@code length} bytes starting at {@code position}, at most {@link Integer#MAX_VALUE} bytes.
+     */
+    public MappedByteBuffer map(long position, long length) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(length, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Writes {@code length} bytes starting at {@code position} (or until the end of the file) to the output.
+     */
+    public void transferTo(long position, long length, OutputStream outputStream) throws IOException {
+        WritableByteChannel target = Channels.newChannel(outputStream);
+        long end = size();
+        if (length < end - position) {
+            end = position + length;
+        }
+        while (position < end) {
+            ByteBuffer window = map(position, Math.min(end - position, WINDOW_SIZE));
+            position += window.remaining();
+            while (window.hasRemaining()) {
+                target.write(window);
+            }
+        }
+    }
+
+    /**
+     * @return offset of the first of the last {@code lines} lines, a line break at the very end of the file
+     * does not start another line
+     */
+    public long tailOffset(int lines) throws IOException {
+        return tailOffset(channel, lines);
+    }
+
+    /**
+     * Like {@link #tailOffset(int)} for any channel. The last lines are usually a small part of the file, so they
+     * are scanned backwards in blocks of {@link #TAIL_BLOCK_SIZE} bytes read onto the heap instead of being mapped.
+     */
+    public static long tailOffset(FileChannel channel, int lines) throws IOException {
+        long end = channel.size();
+        if (lines <= 0) {
+            return end;
+        }
+        ByteBuffer block = ByteBuffer.allocate((int) Math.min(TAIL_BLOCK_SIZE, end));
+        // skip the line break terminating the last line
+        long position = end - 1;
+        int found = 0;
+        while (position > 0) {
+            long blockStart = Math.max(0, position - TAIL_BLOCK_SIZE);
+            block.clear();
+            block.limit((int) (position - blockStart));
+            while (block.hasRemaining() && channel.read(block, blockStart + block.position()) > 0) {
+                // read until complete
+            }
+            for (int i = block.position() - 1; i >= 0; i--) {
+                if (block.get(i) == '\n' && ++found == lines) {
+                    return blockStart + i + 1;
+                }
+            }
+            position = blockStart;
+        }
+        return 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
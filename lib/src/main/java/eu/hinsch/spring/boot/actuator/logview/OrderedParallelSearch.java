@@ -0,0 +1,375 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs search tasks in parallel while writing their output in task order.
+ * <p>
+ * Each task writes into its own buffer. The buffer of the first unfinished task is handed to the response as
+ * soon as data arrives, output of later tasks is held back until all earlier tasks are done. The bytes held
+ * back are limited by a budget shared by all searches, tasks that exceed it wait until earlier output has
+ * been written.
+ * <p>
+ * Tasks that are only known later (like the content of a subfolder) are added through {@link #deferred}, the
+ * tasks they create are run in parallel as well and written in their place. When the output reaches a task no
+ * thread has picked up yet, the writing thread runs it itself, so output never waits behind later tasks that
+ * occupy all threads.
+ */
+public class OrderedParallelSearch implements Closeable {
+
+    private static final int CHUNK_SIZE = 8 * 1024;
+    private static final long BUDGET_POLL_MILLIS = 50;
+    private static final Chunk END = new Chunk(new byte[0], 0);
+
+    @FunctionalInterface
+    public interface Task {
+        void run(OutputStream outputStream) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface TaskSource {
+        List<Task> tasks() throws IOException;
+    }
+
+    private final ExecutorService executor;
+    private final Semaphore budget;
+    private final int maxBufferedBytes;
+
+    public OrderedParallelSearch(int threads, int maxBufferedBytes) {
+        this.executor = createExecutor(threads);
+        this.maxBufferedBytes = Math.max(0, maxBufferedBytes);
+        this.budget = new Semaphore(this.maxBufferedBytes);
+    }
+
+    private static ExecutorService createExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "logview-search-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+        threadPool.allowCoreThreadTimeOut(true);
+        return threadPool;
+    }
+
+    /**
+     * @return task standing for the tasks of the source, which is only asked for them once the task is run
+     */
+    public static Task deferred(TaskSource source) {
+        return new DeferredTask(source);
+    }
+
+    public void execute(List<Task> tasks, OutputStream outputStream) throws IOException {
+        List<Output> outputs = submit(tasks);
+        try {
+            for (Output output : outputs) {
+                output.drainTo(outputStream);
+            }
+        }
+        finally {
+            outputs.forEach(Output::cancel);
+        }
+    }
+
+    private List<Output> submit(List<Task> tasks) {
+        List<Output> outputs = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            Output output = task instanceof DeferredTask
+                    ? new DeferredOutput(((DeferredTask) task).source)
+                    : new TaskOutput(task);
+            outputs.add(output);
+            executor.execute(output::start);
+        }
+        return outputs;
+    }
+
+    /**
+     * @return bytes currently held back by all running searches
+     */
+    public int getBufferedBytes() {
+        return maxBufferedBytes - budget.availablePermits();
+    }
+
+    /**
+     * Stops the search threads, running searches are interrupted.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static void rethrow(Throwable error) throws IOException {
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        }
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+    }
+
+    private static class Chunk {
+        final byte[] data;
+        final int permits;
+
+        Chunk(byte[] data, int permits) {
+            this.data = data;
+            this.permits = permits;
+        }
+    }
+
+    /**
+     * Runs the subtasks one after the other when not run through {@link #execute}.
+     */
+    private static class DeferredTask implements Task {
+        private final TaskSource source;
+
+        DeferredTask(TaskSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public void run(OutputStream outputStream) throws IOException {
+            for (Task task : source.tasks()) {
+                task.run(outputStream);
+            }
+        }
+    }
+
+    private interface Output {
+        /**
+         * Called by the executor, does nothing if the writing thread already took over.
+         */
+        void start();
+
+        void drainTo(OutputStream outputStream) throws IOException;
+
+        void cancel();
+    }
+
+    private class DeferredOutput implements Output {
+        private final TaskSource source;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final CountDownLatch expanded = new CountDownLatch(1);
+        private volatile List<Output> children;
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+
+        DeferredOutput(TaskSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public void start() {
+            if (started.compareAndSet(false, true)) {
+                expand();
+            }
+        }
+
+        private void expand() {
+            try {
+                if (!cancelled) {
+                    children = submit(source.tasks());
+                    if (cancelled) {
+                        children.forEach(Output::cancel);
+                    }
+                }
+            } catch (IOException | RuntimeException | Error e) {
+                error = e;
+            } finally {
+                expanded.countDown();
+            }
+        }
+
+        @Override
+        public void drainTo(OutputStream outputStream) throws IOException {
+            if (started.compareAndSet(false, true)) {
+                expand();
+            }
+            else if (expanded.getCount() > 0) {
+                outputStream.flush();
+                try {
+                    expanded.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while waiting for search tasks");
+                }
+            }
+            rethrow(error);
+            for (Output child : children) {
+                child.drainTo(outputStream);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            List<Output> expandedChildren = children;
+            if (expandedChildren != null) {
+                expandedChildren.forEach(Output::cancel);
+            }
+        }
+    }
+
+    private class TaskOutput extends OutputStream implements Output {
+        private final Task task;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<>();
+        private byte[] current = new byte[CHUNK_SIZE];
+        private int length;
+        private volatile boolean head;
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+
+        TaskOutput(Task task) {
+            this.task = task;
+        }
+
+        @Override
+        public void start() {
+            if (started.compareAndSet(false, true)) {
+                run();
+            }
+        }
+
+        private void run() {
+            try {
+                if (!cancelled) {
+                    task.run(this);
+                    publish();
+                }
+            } catch (IOException | RuntimeException | Error e) {
+                error = e;
+            } finally {
+                chunks.add(END);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) throws IOException {
+            checkCancelled();
+            if (length + count > current.length) {
+                current = Arrays.copyOf(current, Math.max(current.length * 2, length + count));
+            }
+            System.arraycopy(bytes, offset, current, length, count);
+            length += count;
+            if (length >= CHUNK_SIZE) {
+                publish();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            publish();
+        }
+
+        private void publish() throws IOException {
+            if (length == 0) {
+                return;
+            }
+            chunks.add(new Chunk(Arrays.copyOf(current, length), acquire(length)));
+            if (cancelled) {
+                releaseBuffered();
+            }
+            length = 0;
+            if (current.length > CHUNK_SIZE) {
+                current = new byte[CHUNK_SIZE];
+            }
+        }
+
+        private int acquire(int bytes) throws IOException {
+            // a chunk larger than the whole budget waits for all of it, an empty budget means no read-ahead at all
+            int permits = Math.max(1, Math.min(bytes, maxBufferedBytes));
+            try {
+                while (!head) {
+                    checkCancelled();
+                    if (budget.tryAcquire(permits, BUDGET_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                        return permits;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for search buffer");
+            }
+            // output of the head task goes straight to the response and needs no budget
+            return 0;
+        }
+
+        private void checkCancelled() throws IOException {
+            if (cancelled) {
+                throw new IOException("search cancelled");
+            }
+        }
+
+        @Override
+        public void drainTo(OutputStream outputStream) throws IOException {
+            if (started.compareAndSet(false, true)) {
+                // not picked up by any thread yet, the output is next so it can go straight to the response
+                if (!cancelled) {
+                    task.run(outputStream);
+                }
+                return;
+            }
+            head = true;
+            try {
+                Chunk chunk;
+                while ((chunk = nextChunk(outputStream)) != END) {
+                    budget.release(chunk.permits);
+                    outputStream.write(chunk.data);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for search results");
+            }
+            rethrow(error);
+        }
+
+        private Chunk nextChunk(OutputStream outputStream) throws IOException, InterruptedException {
+            Chunk chunk = chunks.poll();
+            if (chunk == null) {
+                // nothing buffered, so pass on what has been written before waiting for more
+                outputStream.flush();
+                chunk = chunks.take();
+            }
+            return chunk;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            releaseBuffered();
+        }
+
+        private void releaseBuffered() {
+            Chunk chunk;
+            while ((chunk = chunks.poll()) != null) {
+                budget.release(chunk.permits);
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+/**
+ * Matches lines against a regular expression. A literal that every match has to contain is extracted from the
+ * expression and used to skip lines without decoding them, only candidate lines are run through
+ * {@link java.util.regex}.
+ */
+public class RegexMatcher implements LineMatcher {
+
+    private final Pattern pattern;
+    private final LiteralMatcher prefilter;
+
+    public RegexMatcher(String regex) {
+        this.pattern = Pattern.compile(regex);
+        this.prefilter = new LiteralMatcher(requiredLiteral(regex).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public int find(ByteBuffer data, int from, int to) {
+        return prefilter.find(data, from, to);
+    }
+
+    @Override
+    public boolean matches(ByteBuffer data, int start, int end) {
+        ByteBuffer line = data.duplicate();
+        line.limit(end);
+        line.position(start);
+        return pattern.matcher(StandardCharsets.UTF_8.decode(line)).find();
+    }
+
+    @Override
+    public byte[] requiredLiteral() {
+        return prefilter.requiredLiteral();
+    }
+
+    /**
+     * Extracts the longest run of literal characters every match of the expression has to contain. The analysis is
+     * conservative: expressions using alternation or inline flags yield an empty literal, groups and character
+     * classes end a run.
+     */
+    static String requiredLiteral(String regex) {
+        if (regex.contains("(?")) {
+            return "";
+        }
+        String longest = "";
+        StringBuilder run = new StringBuilder();
+        boolean lastAtomLiteral = false;
+        int depth = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\' && i + 1 < regex.length()) {
+                char next = regex.charAt(++i);
+                if (depth == 0 && !Character.isLetterOrDigit(next)) {
+                    run.append(next);
+                    lastAtomLiteral = true;
+                    continue;
+                }
+                // the operands of the escape are not literal characters
+                i = endOfEscape(regex, i);
+            }
+            else if (c == '[') {
+                i = endOfCharacterClass(regex, i);
+            }
+            else if (c == '(') {
+                depth++;
+            }
+            else if (c == ')') {
+                depth--;
+            }
+            else if (c == '|') {
+                return "";
+            }
+            else if (depth == 0 && (c == '*' || c == '?' || c == '{' && isOptionalRepetition(regex, i))) {
+                if (lastAtomLiteral) {
+                    // the preceding character may be absent
+                    removeLastCharacter(run);
+                }
+                if (c == '{') {
+                    i = endOfRepetition(regex, i);
+                }
+            }
+            else if (c == '{') {
+                i = endOfRepetition(regex, i);
+            }
+            else if (depth == 0 && c == '+') {
+                longest = longer(longest, run);
+                run.setLength(0);
+                lastAtomLiteral = false;
+                continue;
+            }
+            else if (depth == 0 && c != '.' && c != '^' && c != '$' && c != '}') {
+                run.append(c);
+                lastAtomLiteral = true;
+                continue;
+            }
+            // anything else cannot be part of a literal run
+            longest = longer(longest, run);
+            run.setLength(0);
+            lastAtomLiteral = false;
+        }
+        return longer(longest, run);
+    }
+
+    private static void removeLastCharacter(StringBuilder run) {
+        int length = run.length() - 1;
+        if (length > 0 && Character.isSurrogatePair(run.charAt(length - 1), run.charAt(length))) {
+            length--;
+        }
+        run.setLength(length);
+    }
+
+    /**
+     * @param start position of the character following the backslash
+     * @return position of the last character of the escape sequence
+     */
+    private static int endOfEscape(String regex, int start) {
+        char c = regex.charAt(start);
+        int next = start + 1;
+        boolean braced = next < regex.length() && regex.charAt(next) == '{';
+        switch (c) {
+            case 'x':
+                return braced ? endOfRepetition(regex, next) : Math.min(start + 2, regex.length() - 1);
+            case 'u':
+                return Math.min(start + 4, regex.length() - 1);
+            case '0':
+                return endOfDigits(regex, start, 3, '7');
+            case 'c':
+                return Math.min(next, regex.length() - 1);
+            case 'k':
+                int end = regex.indexOf('>', start);
+                return end < 0 ? regex.length() - 1 : end;
+            case 'p':
+            case 'P':
+                return braced ? endOfRepetition(regex, next) : Math.min(next, regex.length() - 1);
+            case 'N':
+                return braced ? endOfRepetition(regex, next) : start;
+            default:
+                // back references consume the following digits as well
+                return c >= '1' && c <= '9' ? endOfDigits(regex, start, Integer.MAX_VALUE, '9') : start;
+        }
+    }
+
+    private static int endOfDigits(String regex, int start, int maxDigits, char maxDigit) {
+        int i = start;
+        while (i + 1 < regex.length() && i - start < maxDigits
+                && regex.charAt(i + 1) >= '0' && regex.charAt(i + 1) <= maxDigit) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int endOfCharacterClass(String regex, int start) {
+        int i = start + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') {
+            i++;
+        }
+        if (i < regex.length() && regex.charAt(i) == ']') {
+            i++;
+        }
+        int depth = 1;
+        for (; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            }
+            else if (c == '[') {
+                depth++;
+            }
+            else if (c == ']' && --depth == 0) {
+                return i;
+            }
+        }
+        return i;
+    }
+
+    private static int endOfRepetition(String regex, int start) {
+        int end = regex.indexOf('}', start);
+        return end < 0 ? regex.length() : end;
+    }
+
+    private static boolean isOptionalRepetition(String regex, int start) {
+        int i = start + 1;
+        while (i < regex.length() && regex.charAt(i) == '0') {
+            i++;
+        }
+        return i > start + 1 && i < regex.length() && (regex.charAt(i) == ',' || regex.charAt(i) == '}');
+    }
+
+    private static String longer(String longest, StringBuilder run) {
+        return run.length() > longest.length() ? run.toString() : longest;
+    }
+}
@@ -0,0 +1,189 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.springframework.util.Assert;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Negotiates the {@code Content-Encoding} of a response with the client's {@code Accept-Encoding} header and
+ * compresses the content while it is written.
+ */
+public class ResponseCompression {
+
+    public static final int DEFAULT_LEVEL = 6;
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final int level;
+
+    /**
+     * @param level deflate compression level from 1 (fastest) to 9 (smallest), 0 disables compression
+     */
+    public ResponseCompression(int level) {
+        // checked here, so a misconfigured level fails at startup rather than with the first compressed response
+        Assert.isTrue(level >= 0 && level <= 9, "compression level must be between 0 and 9");
+        this.level = level;
+    }
+
+    /**
+     * Marks the response as depending on the {@code Accept-Encoding} header, if compression is enabled.
+     * <p>
+     * Codings are ranked by their quality value, {@code *} stands for every coding not listed explicitly, so
+     * {@code gzip;q=0} refuses gzip even if {@code *} is accepted. Gzip is preferred among equally ranked codings.
+     *
+     * @return {@link #GZIP} or {@link #DEFLATE} if accepted by the client and not ranked below an explicitly listed
+     * {@code identity}, otherwise null
+     */
+    public String negotiate(String acceptEncoding, HttpServletResponse response) {
+        if (level <= 0) {
+            return null;
+        }
+        response.addHeader("Vary", "Accept-Encoding");
+        if (acceptEncoding == null) {
+            return null;
+        }
+        // -1 for codings that are not listed
+        double gzip = -1;
+        double deflate = -1;
+        double identity = -1;
+        double any = -1;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim().toLowerCase();
+            double quality = quality(parameters);
+            if (name.equals(GZIP) || name.equals("x-gzip")) {
+                gzip = Math.max(gzip, quality);
+            }
+            else if (name.equals(DEFLATE)) {
+                deflate = Math.max(deflate, quality);
+            }
+            else if (name.equals("identity")) {
+                identity = Math.max(identity, quality);
+            }
+            else if (name.equals("*")) {
+                any = Math.max(any, quality);
+            }
+        }
+        gzip = gzip >= 0 ? gzip : any;
+        deflate = deflate >= 0 ? deflate : any;
+        double best = Math.max(gzip, deflate);
+        if (best <= 0 || best < identity) {
+            return null;
+        }
+        return gzip >= deflate ? GZIP : DEFLATE;
+    }
+
+    /**
+     * @return the quality value of a coding, 1 if missing and 0 if invalid
+     */
+    private static double quality(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    double quality = Double.parseDouble(parameter.substring(2));
+                    return quality >= 0 && quality <= 1 ? quality : 0;
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Returns the stream to write the content to. The stream has to be closed to complete the content, this does
+     * not close the response.
+     * <p>
+     * {@code Content-Encoding} is only set once content is written, so an error raised before (e.g. a missing file)
+     * is not answered with a plain error page labelled as compressed. Without any content the response stays empty
+     * and unencoded.
+     *
+     * @param encoding the negotiated encoding, null to send the content unchanged
+     */
+    public OutputStream compress(String encoding, HttpServletResponse response) throws IOException {
+        if (encoding == null) {
+            return new CloseShieldOutputStream(response.getOutputStream());
+        }
+        return new EncodingOutputStream(encoding, response);
+    }
+
+    private OutputStream compressing(String encoding, OutputStream outputStream) throws IOException {
+        // flushing sends what was compressed so far, so search results still arrive while searching
+        if (GZIP.equals(encoding)) {
+            return new GZIPOutputStream(outputStream, BUFFER_SIZE, true) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+        Deflater deflater = new Deflater(level);
+        return new DeflaterOutputStream(outputStream, deflater, BUFFER_SIZE, true) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Sets the header and starts compressing on the first write.
+     */
+    private class EncodingOutputStream extends OutputStream {
+        private final String encoding;
+        private final HttpServletResponse response;
+        private OutputStream encoder;
+
+        EncodingOutputStream(String encoding, HttpServletResponse response) {
+            this.encoding = encoding;
+            this.response = response;
+        }
+
+        private OutputStream encoder() throws IOException {
+            if (encoder == null) {
+                response.setHeader("Content-Encoding", encoding);
+                encoder = compressing(encoding, new CloseShieldOutputStream(response.getOutputStream()));
+            }
+            return encoder;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            encoder().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > 0) {
+                encoder().write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (encoder != null) {
+                encoder.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (encoder != null) {
+                encoder.close();
+            }
+        }
+    }
+}
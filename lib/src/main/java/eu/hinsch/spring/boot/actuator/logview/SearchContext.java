@@ -0,0 +1,215 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+
+/**
+ * State of a single search request, handed to the {@link FileProvider}s to create their search tasks.
+ */
+public class SearchContext {
+
+    private final LineMatcher matcher;
+    private final Path root;
+    private final TrigramIndex index;
+    private final SearchPage page;
+    private final TimeRange timeRange;
+    private final Function<Path, FileProvider> fileProviders;
+    private int maxDepth = Integer.MAX_VALUE;
+    private int before;
+    private int after;
+    private PathMatcher filePattern;
+    private boolean json;
+
+    /**
+     * @param index trigram index to use for plain files, may be null
+     * @param page page to fill, or null to search without limit
+     * @param timeRange time window to search in, or null to search all lines
+     * @param fileProviders looks up the provider responsible for an archive or folder
+     */
+    public SearchContext(LineMatcher matcher, Path root, TrigramIndex index, SearchPage page, TimeRange timeRange,
+                         Function<Path, FileProvider> fileProviders) {
+        this.matcher = matcher;
+        this.root = root;
+        this.index = index;
+        this.page = page;
+        this.timeRange = timeRange;
+        this.fileProviders = fileProviders;
+    }
+
+    public LineMatcher getMatcher() {
+        return matcher;
+    }
+
+    /**
+     * @param before number of context lines to write before each match, at most
+     *               {@link LineSearcher#MAX_CONTEXT_LINES}
+     * @param after number of context lines to write after each match, at most
+     *              {@link LineSearcher#MAX_CONTEXT_LINES}
+     */
+    public void setContext(int before, int after) {
+        // checked up front, as searchers are only created once the response is written
+        LineSearcher.checkContext(before, after);
+        this.before = Math.max(0, before);
+        this.after = Math.max(0, after);
+    }
+
+    /**
+     * @param json whether results are written as newline delimited JSON records instead of plain lines
+     */
+    public void setJson(boolean json) {
+        this.json = json;
+    }
+
+    /**
+     * @param maxDepth number of subfolder levels below the root to search, 0 to only search the root itself
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * @param glob glob pattern the names of searched files have to match (e.g. {@code *.log}), null for all files
+     */
+    public void setFilePattern(String glob) {
+        this.filePattern = glob != null ? FileSystems.getDefault().getPathMatcher("glob:" + glob) : null;
+    }
+
+    /**
+     * @return whether the subfolder should be searched, symbolic links are not followed to avoid cycles
+     */
+    public boolean descendsInto(Path folder) {
+        return root.relativize(folder).getNameCount() <= maxDepth && !Files.isSymbolicLink(folder);
+    }
+
+    /**
+     * @return whether the file (or archive entry) matches the file pattern
+     */
+    public boolean includes(String filename) {
+        if (filePattern == null) {
+            return true;
+        }
+        String name = filename.substring(filename.lastIndexOf('/') + 1);
+        return !name.isEmpty() && filePattern.matches(Paths.get(name));
+    }
+
+    /**
+     * @return time window to search in, or null to search all lines
+     */
+    public TimeRange getTimeRange() {
+        return timeRange;
+    }
+
+    /**
+     * @return tasks searching all files inside the given archive, none if a time range is given because archive
+     * entries have no timestamp index
+     */
+    public List<OrderedParallelSearch.Task> archiveTasks(Path archive) throws IOException {
+        if (timeRange != null) {
+            return emptyList();
+        }
+        return fileProviders.apply(archive).searchTasks(archive, this);
+    }
+
+    /**
+     * @return task searching the subfolder, which is only listed once the search gets to it
+     */
+    public OrderedParallelSearch.Task folderTask(Path folder) {
+        return OrderedParallelSearch.deferred(() -> isDone()
+                ? emptyList()
+                : fileProviders.apply(folder).searchTasks(folder, this));
+    }
+
+    /**
+     * @return offset to start searching the named file or archive entry at, or -1 if it has to be skipped
+     * because it lies before the page cursor
+     */
+    public long startOffset(String name) {
+        return page != null ? page.startOffset(name) : 0;
+    }
+
+    /**
+     * @return whether the archive can be skipped without reading it, because it lies before the page cursor
+     */
+    public boolean skipsArchive(Path archive) {
+        return page != null && page.skipsArchive(displayName(archive.getParent(), archive.getFileName().toString()));
+    }
+
+    /**
+     * @return whether the page is full, so no further files need to be searched
+     */
+    public boolean isDone() {
+        return page != null && page.isFull();
+    }
+
+    /**
+     * @param end end of the part to search, or {@link Long#MAX_VALUE} to search up to the end of the file
+     * @return the parts of a plain file between {@code start} and {@code end} that need to be searched, the whole
+     * part if no index is used. The index is not used with context lines, as they may lie outside of the candidates.
+     */
+    public List<TrigramIndex.Range> candidates(Path file, long start, long end) throws IOException {
+        if (index == null || before > 0 || after > 0) {
+            return start < end ? singletonList(range(start, end)) : emptyList();
+        }
+        List<TrigramIndex.Range> ranges = new ArrayList<>();
+        for (TrigramIndex.Range candidate : index.candidates(file, matcher.requiredLiteral())) {
+            long offset = Math.max(start, candidate.getOffset());
+            long candidateEnd = candidate.getLength() == Long.MAX_VALUE
+                    ? Long.MAX_VALUE
+                    : candidate.getOffset() + candidate.getLength();
+            long rangeEnd = Math.min(end, candidateEnd);
+            if (offset < rangeEnd) {
+                ranges.add(range(offset, rangeEnd));
+            }
+        }
+        return ranges;
+    }
+
+    private static TrigramIndex.Range range(long start, long end) {
+        return new TrigramIndex.Range(start, end == Long.MAX_VALUE ? Long.MAX_VALUE : end - start);
+    }
+
+    /**
+     * Searches a range of a memory mapped file.
+     */
+    public void searchMapped(MappedFileReader file, TrigramIndex.Range range, String displayName,
+                             OutputStream outputStream) throws IOException {
+        long end = range.getLength() == Long.MAX_VALUE ? Long.MAX_VALUE : range.getOffset() + range.getLength();
+        lineSearcher().search(file, range.getOffset(), end, displayName, outputStream);
+    }
+
+    /**
+     * Searches the given content, which is not closed afterwards.
+     *
+     * @param offset position of the stream's first byte within the searched file
+     */
+    public void searchStream(InputStream inputStream, long offset, String displayName, OutputStream outputStream)
+            throws IOException {
+        lineSearcher().search(inputStream, offset, displayName, outputStream);
+    }
+
+    private LineSearcher lineSearcher() {
+        LineSearcher lineSearcher = new LineSearcher(matcher, page, before, after);
+        lineSearcher.setJson(json);
+        return lineSearcher;
+    }
+
+    /**
+     * @return name of a file (or archive entry) relative to the search root
+     */
+    public String displayName(Path folder, String filename) {
+        String relativeFolder = root.relativize(folder).toString();
+        return relativeFolder.isEmpty() ? filename : relativeFolder + "/" + filename;
+    }
+}
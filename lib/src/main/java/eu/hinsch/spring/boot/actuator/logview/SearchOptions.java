@@ -0,0 +1,133 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+/**
+ * Optional request parameters of a search, bound from the query string.
+ */
+public class SearchOptions {
+    private boolean regex;
+    private Integer limit;
+    private String cursor;
+    private String from;
+    private String to;
+    private String base;
+    private Integer depth;
+    private String glob;
+    private Integer before;
+    private Integer after;
+    private Integer context;
+
+    /**
+     * @return whether the term is a regular expression instead of plain text
+     */
+    public boolean isRegex() {
+        return regex;
+    }
+
+    public void setRegex(boolean regex) {
+        this.regex = regex;
+    }
+
+    /**
+     * @return maximum number of matching lines to return, null to return all
+     */
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * @return cursor returned with the previous page
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public void setFrom(String from) {
+        this.from = from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public void setTo(String to) {
+        this.to = to;
+    }
+
+    /**
+     * @return folder (or archive) to search in, relative to the logging path
+     */
+    public String getBase() {
+        return base;
+    }
+
+    public void setBase(String base) {
+        this.base = base;
+    }
+
+    /**
+     * @return number of subfolder levels to search, null for all
+     */
+    public Integer getDepth() {
+        return depth;
+    }
+
+    public void setDepth(Integer depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * @return glob pattern the searched file names have to match
+     */
+    public String getGlob() {
+        return glob;
+    }
+
+    public void setGlob(String glob) {
+        this.glob = glob;
+    }
+
+    /**
+     * @return number of lines to write before each match, defaults to {@link #getContext()}
+     */
+    public Integer getBefore() {
+        return before;
+    }
+
+    public void setBefore(Integer before) {
+        this.before = before;
+    }
+
+    /**
+     * @return number of lines to write after each match, defaults to {@link #getContext()}
+     */
+    public Integer getAfter() {
+        return after;
+    }
+
+    public void setAfter(Integer after) {
+        this.after = after;
+    }
+
+    /**
+     * @return number of lines to write before and after each match
+     */
+    public Integer getContext() {
+        return context;
+    }
+
+    public void setContext(Integer context) {
+        this.context = context;
+    }
+}
@@ -0,0 +1,121 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import org.springframework.util.Assert;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Limits a search to one page of matches and keeps track of where the next page starts.
+ * <p>
+ * A cursor identifies the file (or archive entry) and the byte offset behind the last match of a page. Files
+ * are visited in the same order on every request, so the next page skips everything before the cursor's file and
+ * continues reading that file at the offset. Pages are searched sequentially, which means nothing is read after
+ * the page is full.
+ */
+public class SearchPage {
+
+    /**
+     * Upper bound of the page size, as a page is collected in memory before it is sent.
+     */
+    public static final int MAX_LIMIT = 1000;
+
+    private final int limit;
+    private final String resumeName;
+    private final long resumeOffset;
+    private boolean resumePending;
+    private int matches;
+    private long scannedBytes;
+    private String nextCursor;
+
+    /**
+     * @param cursor cursor returned with the previous page, or null for the first page
+     */
+    public SearchPage(int limit, String cursor) {
+        Assert.isTrue(limit > 0, "limit must be positive");
+        Assert.isTrue(limit <= MAX_LIMIT, "limit must not exceed " + MAX_LIMIT);
+        this.limit = limit;
+        if (cursor != null) {
+            String decoded;
+            try {
+                decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("invalid cursor " + cursor, e);
+            }
+            int separator = decoded.indexOf(':');
+            Assert.isTrue(separator > 0, "invalid cursor " + cursor);
+            resumeOffset = Long.parseLong(decoded.substring(0, separator));
+            resumeName = decoded.substring(separator + 1);
+            resumePending = true;
+        }
+        else {
+            resumeOffset = 0;
+            resumeName = null;
+        }
+    }
+
+    static String cursor(String name, long offset) {
+        return Base64.getUrlEncoder().encodeToString((offset + ":" + name).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return offset to start searching the named file at, or -1 if the file lies before the cursor
+     */
+    public long startOffset(String name) {
+        if (!resumePending) {
+            return 0;
+        }
+        if (name.equals(resumeName)) {
+            resumePending = false;
+            return resumeOffset;
+        }
+        return -1;
+    }
+
+    /**
+     * @return whether the whole archive lies before the cursor and can be skipped without reading it
+     */
+    public boolean skipsArchive(String archiveName) {
+        return resumePending && !resumeName.startsWith(archiveName + "/");
+    }
+
+    /**
+     * Records a match ending at the given offset of the named file.
+     *
+     * @return whether more matches fit on the page
+     */
+    public boolean matched(String name, long endOffset) {
+        if (++matches == limit) {
+            nextCursor = cursor(name, endOffset);
+            return false;
+        }
+        return true;
+    }
+
+    public void scanned(long bytes) {
+        scannedBytes += bytes;
+    }
+
+    /**
+     * @return whether the file of the cursor was not found once all files were visited, e.g. because it was rotated
+     * away since the previous page
+     */
+    public boolean isCursorLost() {
+        return resumePending;
+    }
+
+    public boolean isFull() {
+        return matches >= limit;
+    }
+
+    /**
+     * @return cursor of the next page, or null if the search is exhausted
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public long getScannedBytes() {
+        return scannedBytes;
+    }
+}
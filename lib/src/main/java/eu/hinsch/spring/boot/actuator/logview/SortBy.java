@@ -1,8 +1,58 @@
 package eu.hinsch.spring.boot.actuator.logview;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
 /**
 * Created by lh on 26/02/15.
 */
 public enum SortBy {
-    FILENAME, SIZE, MODIFIED
+    FILENAME((a, b) -> a.getFilename().compareTo(b.getFilename())),
+    SIZE((a, b) -> Long.compare(a.getSize(), b.getSize())),
+    MODIFIED((a, b) -> Long.compare(a.getModified().toMillis(), b.getModified().toMillis()));
+
+    private final Comparator<FileEntry> comparator;
+
+    SortBy(Comparator<FileEntry> comparator) {
+        this.comparator = comparator;
+    }
+
+    public Comparator<FileEntry> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Selects the first entries in this order with a heap of at most {@code count} entries, instead of sorting all
+     * of them.
+     *
+     * @return the first {@code count} entries, sorted
+     */
+    public List<FileEntry> first(Collection<FileEntry> entries, boolean desc, int count) {
+        Comparator<FileEntry> order = desc ? comparator.reversed() : comparator;
+        if (count <= 0) {
+            return new ArrayList<>();
+        }
+        if (count >= entries.size()) {
+            List<FileEntry> sortedEntries = new ArrayList<>(entries);
+            sortedEntries.sort(order);
+            return sortedEntries;
+        }
+        // the head of the heap is the last of the entries selected so far
+        PriorityQueue<FileEntry> heap = new PriorityQueue<>(count, order.reversed());
+        for (FileEntry entry : entries) {
+            if (heap.size() < count) {
+                heap.add(entry);
+            }
+            else if (order.compare(entry, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+        List<FileEntry> first = new ArrayList<>(heap);
+        first.sort(order);
+        return first;
+    }
 }
@@ -13,11 +13,27 @@ import java.util.Date;
 import java.util.List;
 import java.util.zip.GZIPInputStream;
 
+import static java.util.Collections.singletonList;
+
 /**
 * Created by lh on 28/02/15.
 */
 public class TarGzArchiveFileProvider extends AbstractFileProvider {
 
+    private final ArchiveListingCache listingCache;
+    private final TarGzIndexCache indexCache;
+
+    public TarGzArchiveFileProvider() {
+        this(new ArchiveListingCache(ArchiveListingCache.DEFAULT_MAX_ARCHIVES,
+                ArchiveListingCache.DEFAULT_MAX_ENTRIES, null),
+                new TarGzIndexCache(TarGzIndexCache.DEFAULT_MAX_INDEXES));
+    }
+
+    public TarGzArchiveFileProvider(ArchiveListingCache listingCache, TarGzIndexCache indexCache) {
+        this.listingCache = listingCache;
+        this.indexCache = indexCache;
+    }
+
     @Override
     public boolean canHandle(Path folder) {
         return isTarGz(folder);
@@ -25,15 +41,22 @@ public class TarGzArchiveFileProvider extends AbstractFileProvider {
 
     @Override
     public List<FileEntry> getFileEntries(Path folder) throws IOException {
-        TarArchiveInputStream inputStream = new TarArchiveInputStream(new GZIPInputStream(new FileInputStream(folder.toFile())));
-        TarArchiveEntry entry;
-        List<FileEntry> files = new ArrayList<>();
-        while ((entry = inputStream.getNextTarEntry()) != null) {
-            files.add(createFileEntry(entry));
-        }
+        List<FileEntry> files = listingCache.getFileEntries(folder, () -> readFileEntries(folder));
+        files.forEach(file -> file.setModifiedPretty(prettyTime.format(new Date(file.getModified().toMillis()))));
         return files;
     }
 
+    private static List<FileEntry> readFileEntries(Path folder) throws IOException {
+        try (TarArchiveInputStream inputStream = new TarArchiveInputStream(new GZIPInputStream(new FileInputStream(folder.toFile())))) {
+            TarArchiveEntry entry;
+            List<FileEntry> files = new ArrayList<>();
+            while ((entry = inputStream.getNextTarEntry()) != null) {
+                files.add(createFileEntry(entry));
+            }
+            return files;
+        }
+    }
+
     private static FileEntry createFileEntry(TarArchiveEntry entry) {
         FileEntry fileEntry = new FileEntry();
         try {
@@ -51,12 +74,29 @@ public class TarGzArchiveFileProvider extends AbstractFileProvider {
 
     @Override
     public void streamContent(Path folder, String filename, OutputStream stream) throws IOException {
-        TarArchiveInputStream tarStream = new TarArchiveInputStream(new GZIPInputStream(new FileInputStream(folder.toFile())));
-        TarArchiveEntry entry;
-        while ((entry = tarStream.getNextTarEntry()) != null) {
-            if (entry.getName().equals(filename)) {
-                // TODO why do we need the byte array in between???
-                IOUtils.copy(new ByteArrayInputStream(IOUtils.toByteArray(tarStream)), stream);
+        indexCache.get(folder).streamEntry(folder, filename, stream);
+    }
+
+    @Override
+    public List<OrderedParallelSearch.Task> searchTasks(Path folder, SearchContext search) throws IOException {
+        return singletonList(output -> searchEntries(folder, search, output));
+    }
+
+    private void searchEntries(Path folder, SearchContext search, OutputStream output) throws IOException {
+        if (search.skipsArchive(folder)) {
+            return;
+        }
+        // tar entries can only be reached one after the other, so the whole archive is searched in a single pass
+        try (TarArchiveInputStream tarStream = new TarArchiveInputStream(new GZIPInputStream(
+                new FileInputStream(folder.toFile()), 64 * 1024))) {
+            TarArchiveEntry entry;
+            while (!search.isDone() && (entry = tarStream.getNextTarEntry()) != null) {
+                String displayName = search.displayName(folder, entry.getName());
+                long start = entry.isFile() && search.includes(entry.getName()) ? search.startOffset(displayName) : -1;
+                if (start >= 0) {
+                    IOUtils.skipFully(tarStream, start);
+                    search.searchStream(tarStream, start, displayName, output);
+                }
             }
         }
     }
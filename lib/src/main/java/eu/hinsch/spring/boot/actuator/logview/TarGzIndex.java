@@ -0,0 +1,302 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.io.IOUtils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Index of a tar.gz archive, used to read a single entry without decompressing the archive up to it.
+ * <p>
+ * The index maps every file entry to the offset and size of its content in the uncompressed tar stream, and holds
+ * access points from which decompression can start. A deflate stream can only be entered at the start of a gzip
+ * member, so access points are the starts of the members, at most one every {@link #ACCESS_POINT_SPACING}
+ * uncompressed bytes. Archives written as many members (like by {@code bgzip} or concatenated {@code gzip} output)
+ * can be read close to any entry, archives consisting of a single member are still read from their start, but only
+ * up to the end of the entry.
+ */
+public class TarGzIndex {
+
+    public static final long ACCESS_POINT_SPACING = 1024 * 1024;
+
+    private final long lastModified;
+    private final long size;
+    private final Object fileKey;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final List<AccessPoint> accessPoints;
+
+    private TarGzIndex(BasicFileAttributes attributes, List<AccessPoint> accessPoints) {
+        this.lastModified = attributes.lastModifiedTime().toMillis();
+        this.size = attributes.size();
+        this.fileKey = attributes.fileKey();
+        this.accessPoints = accessPoints;
+    }
+
+    /**
+     * Reads through the whole archive once.
+     */
+    public static TarGzIndex build(Path archive) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(archive, BasicFileAttributes.class);
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ);
+             MemberInputStream inputStream = new MemberInputStream(channel, new AccessPoint(0, 0), true);
+             TarArchiveInputStream tarStream = new TarArchiveInputStream(inputStream)) {
+            TarGzIndex index = new TarGzIndex(attributes, inputStream.accessPoints);
+            TarArchiveEntry entry;
+            while ((entry = tarStream.getNextTarEntry()) != null) {
+                if (entry.isFile()) {
+                    // entry headers are read record by record, so the content starts at the current position
+                    index.entries.put(entry.getName(), new Entry(inputStream.position, entry.getSize()));
+                }
+            }
+            return index;
+        }
+    }
+
+    /**
+     * @return whether the index still matches the archive, and not one replaced with a file of the same size
+     */
+    public boolean isCurrent(BasicFileAttributes attributes) {
+        return lastModified == attributes.lastModifiedTime().toMillis() && size == attributes.size()
+                && Objects.equals(fileKey, attributes.fileKey());
+    }
+
+    /**
+     * Writes the content of the entry, nothing if there is no such entry.
+     */
+    public void streamEntry(Path archive, String name, OutputStream stream) throws IOException {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return;
+        }
+        AccessPoint start = accessPoints.get(0);
+        for (AccessPoint accessPoint : accessPoints) {
+            if (accessPoint.uncompressedOffset > entry.offset) {
+                break;
+            }
+            start = accessPoint;
+        }
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ);
+             InputStream inputStream = new MemberInputStream(channel, start, false)) {
+            IOUtils.skipFully(inputStream, entry.offset - start.uncompressedOffset);
+            IOUtils.copyLarge(inputStream, stream, 0, entry.size);
+        }
+    }
+
+    /**
+     * @return number of positions decompression can start at
+     */
+    int getAccessPoints() {
+        return accessPoints.size();
+    }
+
+    private static class Entry {
+        final long offset;
+        final long size;
+
+        Entry(long offset, long size) {
+            this.offset = offset;
+            this.size = size;
+        }
+    }
+
+    private static class AccessPoint {
+        final long compressedOffset;
+        final long uncompressedOffset;
+
+        AccessPoint(long compressedOffset, long uncompressedOffset) {
+            this.compressedOffset = compressedOffset;
+            this.uncompressedOffset = uncompressedOffset;
+        }
+    }
+
+    /**
+     * Decompresses gzip members starting at an access point, optionally recording the access points passed.
+     */
+    private static class MemberInputStream extends InputStream {
+        private static final int FHCRC = 2;
+        private static final int FEXTRA = 4;
+        private static final int FNAME = 8;
+        private static final int FCOMMENT = 16;
+
+        private final InputStream compressed;
+        private final Inflater inflater = new Inflater(true);
+        private final CRC32 crc = new CRC32();
+        private final byte[] buffer = new byte[64 * 1024];
+        private final List<AccessPoint> accessPoints;
+        // offset of the buffer's first byte in the archive
+        private long bufferOffset;
+        private int bufferPosition;
+        private int bufferLimit;
+        private long position;
+        private boolean inMember;
+        private boolean firstMember = true;
+
+        MemberInputStream(FileChannel channel, AccessPoint start, boolean recordAccessPoints) throws IOException {
+            this.compressed = Channels.newInputStream(channel.position(start.compressedOffset));
+            this.bufferOffset = start.compressedOffset;
+            this.position = start.uncompressedOffset;
+            this.accessPoints = recordAccessPoints ? new ArrayList<>() : null;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (true) {
+                if (!inMember && !startMember()) {
+                    return -1;
+                }
+                if (inflater.needsInput()) {
+                    if (bufferPosition == bufferLimit && !fill()) {
+                        throw new EOFException("unexpected end of gzip archive");
+                    }
+                    inflater.setInput(buffer, bufferPosition, bufferLimit - bufferPosition);
+                }
+                int inflated;
+                try {
+                    inflated = inflater.inflate(bytes, offset, length);
+                } catch (DataFormatException e) {
+                    throw new ZipException(e.getMessage());
+                }
+                bufferPosition = bufferLimit - inflater.getRemaining();
+                crc.update(bytes, offset, inflated);
+                position += inflated;
+                if (inflater.finished()) {
+                    endMember();
+                }
+                if (inflated > 0) {
+                    return inflated;
+                }
+                if (inflater.needsDictionary()) {
+                    throw new ZipException("unsupported preset dictionary in gzip archive");
+                }
+            }
+        }
+
+        /**
+         * @return whether there is another member
+         */
+        private boolean startMember() throws IOException {
+            long memberOffset = bufferOffset + bufferPosition;
+            int id1 = readByte();
+            int id2 = readByte();
+            if (id1 != 0x1f || id2 != 0x8b) {
+                if (firstMember) {
+                    throw new ZipException("not in gzip format");
+                }
+                // end of the archive, possibly followed by padding
+                return false;
+            }
+            if (readByte() != 8) {
+                throw new ZipException("unsupported compression method in gzip archive");
+            }
+            int flags = readByte();
+            skipBytes(6);
+            if ((flags & FEXTRA) != 0) {
+                skipBytes(readByte() | readByte() << 8);
+            }
+            if ((flags & FNAME) != 0) {
+                skipZeroTerminated();
+            }
+            if ((flags & FCOMMENT) != 0) {
+                skipZeroTerminated();
+            }
+            if ((flags & FHCRC) != 0) {
+                skipBytes(2);
+            }
+            if (accessPoints != null && (accessPoints.isEmpty() || position
+                    - accessPoints.get(accessPoints.size() - 1).uncompressedOffset >= ACCESS_POINT_SPACING)) {
+                accessPoints.add(new AccessPoint(memberOffset, position));
+            }
+            inflater.reset();
+            crc.reset();
+            inMember = true;
+            firstMember = false;
+            return true;
+        }
+
+        private void endMember() throws IOException {
+            long expectedCrc = readInt();
+            long expectedSize = readInt();
+            if (expectedCrc != crc.getValue() || expectedSize != (inflater.getBytesWritten() & 0xffffffffL)) {
+                throw new ZipException("corrupt gzip archive");
+            }
+            inMember = false;
+        }
+
+        private long readInt() throws IOException {
+            long value = 0;
+            for (int i = 0; i < 4; i++) {
+                int read = readByte();
+                if (read < 0) {
+                    throw new EOFException("unexpected end of gzip archive");
+                }
+                value |= (long) read << (8 * i);
+            }
+            return value;
+        }
+
+        private int readByte() throws IOException {
+            if (bufferPosition == bufferLimit && !fill()) {
+                return -1;
+            }
+            return buffer[bufferPosition++] & 0xff;
+        }
+
+        private void skipBytes(int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                if (readByte() < 0) {
+                    throw new EOFException("unexpected end of gzip header");
+                }
+            }
+        }
+
+        private void skipZeroTerminated() throws IOException {
+            int read;
+            while ((read = readByte()) != 0) {
+                if (read < 0) {
+                    throw new EOFException("unexpected end of gzip header");
+                }
+            }
+        }
+
+        private boolean fill() throws IOException {
+            bufferOffset += bufferLimit;
+            bufferPosition = 0;
+            bufferLimit = Math.max(0, compressed.read(buffer));
+            return bufferLimit > 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.end();
+            compressed.close();
+        }
+    }
+}
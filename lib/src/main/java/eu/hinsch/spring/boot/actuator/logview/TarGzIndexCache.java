@@ -0,0 +1,84 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of tar.gz indexes, so an archive is only read through once to view any number of its entries.
+ * <p>
+ * Indexes are cached by path and validated by size, modification time and file key, an archive that changed or was
+ * replaced is indexed again. When more than the maximum number of archives are indexed, the least recently used index
+ * is evicted.
+ */
+public class TarGzIndexCache {
+
+    public static final int DEFAULT_MAX_INDEXES = 16;
+
+    private final int maxIndexes;
+    // in access order, guarded by itself
+    private final LinkedHashMap<Path, CachedIndex> indexes = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public TarGzIndexCache(int maxIndexes) {
+        this.maxIndexes = maxIndexes;
+    }
+
+    /**
+     * @return index of the archive, built if the archive is not cached or changed since
+     */
+    public TarGzIndex get(Path archive) throws IOException {
+        Path absoluteArchive = archive.toAbsolutePath();
+        CachedIndex cached;
+        synchronized (indexes) {
+            cached = indexes.computeIfAbsent(absoluteArchive, key -> new CachedIndex());
+            evictLeastRecentlyUsed();
+        }
+        // built once even if requested concurrently, without blocking requests of other archives meanwhile
+        synchronized (cached) {
+            BasicFileAttributes attributes = Files.readAttributes(absoluteArchive, BasicFileAttributes.class);
+            if (cached.index != null && cached.index.isCurrent(attributes)) {
+                hits.incrementAndGet();
+                return cached.index;
+            }
+            misses.incrementAndGet();
+            cached.index = TarGzIndex.build(absoluteArchive);
+            return cached.index;
+        }
+    }
+
+    private void evictLeastRecentlyUsed() {
+        Iterator<CachedIndex> iterator = indexes.values().iterator();
+        while (indexes.size() > maxIndexes && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return number of cached indexes, hits, misses and evictions
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        synchronized (indexes) {
+            statistics.put("indexes", indexes.size());
+        }
+        statistics.put("hits", hits.get());
+        statistics.put("misses", misses.get());
+        statistics.put("evictions", evictions.get());
+        return statistics;
+    }
+
+    private static class CachedIndex {
+        // guarded by this
+        private TarGzIndex index;
+    }
+}
@@ -0,0 +1,52 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import org.springframework.util.Assert;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Time window of log lines, given as {@code yyyy-MM-dd HH:mm[:ss[.SSS]]} (a {@code T} instead of the space is
+ * accepted as well). {@code from} is inclusive, {@code to} exclusive, either of them may be left open.
+ */
+public class TimeRange {
+
+    private static final String TEMPLATE = "0000-01-01 00:00:00.000";
+
+    private final long from;
+    private final long to;
+
+    public TimeRange(String from, String to) {
+        this.from = from != null ? parse(from) : Long.MIN_VALUE;
+        this.to = to != null ? parse(to) : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return the time range, or null if neither {@code from} nor {@code to} is given
+     */
+    public static TimeRange of(String from, String to) {
+        return from != null || to != null ? new TimeRange(from, to) : null;
+    }
+
+    private static long parse(String time) {
+        Assert.isTrue(time.length() >= 16 && time.length() <= TEMPLATE.length(), "invalid time " + time);
+        byte[] padded = (time + TEMPLATE.substring(time.length())).getBytes(StandardCharsets.US_ASCII);
+        long timestamp = TimestampIndex.timestamp(ByteBuffer.wrap(padded), 0, padded.length);
+        Assert.isTrue(timestamp >= 0, "invalid time " + time);
+        return timestamp;
+    }
+
+    /**
+     * @return first timestamp within the range, as returned by {@link TimestampIndex#timestamp}
+     */
+    public long getFrom() {
+        return from;
+    }
+
+    /**
+     * @return first timestamp after the range, as returned by {@link TimestampIndex#timestamp}
+     */
+    public long getTo() {
+        return to;
+    }
+}
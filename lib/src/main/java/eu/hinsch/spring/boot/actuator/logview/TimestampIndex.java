@@ -0,0 +1,278 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sparse in-memory index from line timestamps to byte offsets for plain log files, used to read only the part of
+ * a file that lies within a {@link TimeRange}.
+ * <p>
+ * Lines are expected to start with a timestamp like {@code 2015-01-20 14:02:03.123}, as written by the Spring Boot
+ * default log pattern. Every {@link #SAMPLE_INTERVAL} bytes the offset and timestamp of the next line starting with
+ * a timestamp is sampled, only those few bytes of the file are read to build the index. A lookup binary searches
+ * the samples and then reads at most the lines between two samples. Lines without timestamp (like stack traces)
+ * belong to the preceding line. Timestamps are assumed to increase through the file.
+ * <p>
+ * The samples of a file are built lazily and cached by modification time and size. A file that only grew keeps its
+ * samples and just samples the new content, a replaced or truncated file is sampled again.
+ */
+public class TimestampIndex {
+
+    public static final int SAMPLE_INTERVAL = 1024 * 1024;
+
+    private static final int TIMESTAMP_LENGTH = "yyyy-MM-dd HH:mm:ss.SSS".length();
+    private static final int READ_SIZE = 64 * 1024;
+
+    private final Map<Path, Samples> samples = new ConcurrentHashMap<>();
+    private final Map<Path, Object> locks = new ConcurrentHashMap<>();
+
+    /**
+     * @return the part of the file with lines within the range, its length is {@link Long#MAX_VALUE} if the range
+     * is open at the end, so content appended later is included as well
+     */
+    public TrigramIndex.Range window(Path file, TimeRange range) throws IOException {
+        Path absoluteFile = file.toAbsolutePath();
+        try (FileChannel channel = FileChannel.open(absoluteFile, StandardOpenOption.READ)) {
+            Samples fileSamples = samples(absoluteFile, channel);
+            long start = range.getFrom() == Long.MIN_VALUE ? 0 : offsetOf(channel, fileSamples, range.getFrom());
+            if (range.getTo() == Long.MAX_VALUE) {
+                return new TrigramIndex.Range(start, Long.MAX_VALUE);
+            }
+            long end = Math.max(start, offsetOf(channel, fileSamples, range.getTo()));
+            return new TrigramIndex.Range(start, end - start);
+        }
+    }
+
+    /**
+     * Parses a timestamp of the form {@code yyyy-MM-dd HH:mm:ss.SSS} ({@code T} instead of the space and a comma
+     * instead of the dot are accepted as well).
+     *
+     * @return the timestamp's digits as a number ({@code yyyyMMddHHmmssSSS}), or -1 if {@code buffer[position, end)}
+     * does not start with a timestamp
+     */
+    static long timestamp(ByteBuffer buffer, int position, int end) {
+        if (end - position < TIMESTAMP_LENGTH) {
+            return -1;
+        }
+        long timestamp = 0;
+        for (int i = 0; i < TIMESTAMP_LENGTH; i++) {
+            byte value = buffer.get(position + i);
+            switch (i) {
+                case 4:
+                case 7:
+                    if (value != '-') {
+                        return -1;
+                    }
+                    break;
+                case 10:
+                    if (value != ' ' && value != 'T') {
+                        return -1;
+                    }
+                    break;
+                case 13:
+                case 16:
+                    if (value != ':') {
+                        return -1;
+                    }
+                    break;
+                case 19:
+                    if (value != '.' && value != ',') {
+                        return -1;
+                    }
+                    break;
+                default:
+                    if (value < '0' || value > '9') {
+                        return -1;
+                    }
+                    timestamp = timestamp * 10 + value - '0';
+            }
+        }
+        return timestamp;
+    }
+
+    private Samples samples(Path file, FileChannel channel) throws IOException {
+        synchronized (locks.computeIfAbsent(file, key -> new Object())) {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            Samples cached = samples.get(file);
+            if (cached != null && cached.lastModified == attributes.lastModifiedTime().toMillis()
+                    && cached.size == attributes.size()) {
+                return cached;
+            }
+            Samples updated = cached != null && cached.size <= attributes.size()
+                    && Objects.equals(cached.fileKey, attributes.fileKey())
+                    ? cached.extend(channel, attributes)
+                    : new Samples(attributes.fileKey()).extend(channel, attributes);
+            samples.put(file, updated);
+            return updated;
+        }
+    }
+
+    /**
+     * @return offset of the first line with a timestamp at or after the given one, or the end of the file
+     */
+    private static long offsetOf(FileChannel channel, Samples fileSamples, long timestamp) throws IOException {
+        int index = fileSamples.lastBefore(timestamp);
+        long position = index >= 0 ? fileSamples.offsets[index] : 0;
+        long limit = index + 1 < fileSamples.count ? fileSamples.offsets[index + 1] : channel.size();
+        long offset = firstLine(channel, position, true, limit, timestamp);
+        return offset >= 0 ? offset : limit;
+    }
+
+    /**
+     * @param atLineStart whether {@code position} is the start of a line, otherwise the first line starts after the
+     *                    next line break
+     * @return offset of the first line before {@code limit} that starts with a timestamp at or after the given one,
+     * or -1 if there is none
+     */
+    private static long firstLine(FileChannel channel, long position, boolean atLineStart, long limit, long timestamp)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_SIZE);
+        while (position < limit) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                return -1;
+            }
+            int lineStart = 0;
+            if (!atLineStart) {
+                int lineBreak = indexOfLineBreak(buffer, 0, read);
+                if (lineBreak < 0) {
+                    position += read;
+                    continue;
+                }
+                lineStart = lineBreak + 1;
+                atLineStart = true;
+            }
+            while (position + lineStart < limit) {
+                boolean complete = lineStart + TIMESTAMP_LENGTH <= read;
+                if (!complete && read == buffer.capacity()) {
+                    // read again starting at this line
+                    break;
+                }
+                long lineTimestamp = complete ? timestamp(buffer, lineStart, read) : -1;
+                if (lineTimestamp >= 0 && lineTimestamp >= timestamp) {
+                    return position + lineStart;
+                }
+                int lineBreak = indexOfLineBreak(buffer, lineStart, read);
+                if (lineBreak < 0) {
+                    if (lineStart == 0) {
+                        // line is longer than the buffer, continue looking for its end
+                        atLineStart = false;
+                        lineStart = read;
+                    }
+                    break;
+                }
+                lineStart = lineBreak + 1;
+            }
+            position += lineStart;
+            if (read < buffer.capacity() && lineStart < read) {
+                // end of file within a line that cannot be complete yet
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOfLineBreak(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long readTimestamp(FileChannel channel, long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(TIMESTAMP_LENGTH);
+        while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) > 0) {
+            // read until complete
+        }
+        return timestamp(buffer, 0, buffer.position());
+    }
+
+    /**
+     * Samples of a single file, never changed once published.
+     */
+    private static class Samples {
+        private final Object fileKey;
+        private long lastModified;
+        private long size;
+        private long nextSample;
+        private long[] offsets = new long[16];
+        private long[] timestamps = new long[16];
+        private int count;
+
+        Samples(Object fileKey) {
+            this.fileKey = fileKey;
+        }
+
+        /**
+         * @return copy of the samples, extended up to the current end of the file
+         */
+        Samples extend(FileChannel channel, BasicFileAttributes attributes) throws IOException {
+            Samples extended = new Samples(fileKey);
+            extended.offsets = Arrays.copyOf(offsets, offsets.length);
+            extended.timestamps = Arrays.copyOf(timestamps, timestamps.length);
+            extended.count = count;
+            extended.nextSample = nextSample;
+            extended.lastModified = attributes.lastModifiedTime().toMillis();
+            extended.size = attributes.size();
+            extended.sampleUpTo(channel, extended.size);
+            return extended;
+        }
+
+        private void sampleUpTo(FileChannel channel, long end) throws IOException {
+            while (nextSample < end) {
+                long sampleLimit = Math.min(nextSample + SAMPLE_INTERVAL, end);
+                long offset = nextSample == 0
+                        ? firstLine(channel, 0, true, sampleLimit, Long.MIN_VALUE)
+                        : firstLine(channel, nextSample - 1, false, sampleLimit, Long.MIN_VALUE);
+                if (offset < 0 && sampleLimit == end) {
+                    // the next timestamp may still be written, sample this interval again once the file grew
+                    return;
+                }
+                if (offset >= 0 && (count == 0 || offset > offsets[count - 1])) {
+                    add(offset, readTimestamp(channel, offset));
+                }
+                nextSample += SAMPLE_INTERVAL;
+            }
+        }
+
+        private void add(long offset, long timestamp) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                timestamps = Arrays.copyOf(timestamps, count * 2);
+            }
+            offsets[count] = offset;
+            timestamps[count] = timestamp;
+            count++;
+        }
+
+        /**
+         * @return index of the last sample with a timestamp before the given one, or -1 if there is none
+         */
+        int lastBefore(long timestamp) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (timestamps[middle] < timestamp) {
+                    low = middle + 1;
+                }
+                else {
+                    high = middle - 1;
+                }
+            }
+            return high;
+        }
+    }
+}
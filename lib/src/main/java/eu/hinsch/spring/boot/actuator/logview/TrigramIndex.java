@@ -0,0 +1,341 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * On-disk trigram index for plain log files.
+ * <p>
+ * Every log file is split into blocks of about {@link #BLOCK_SIZE} bytes that end at a line break. For each block
+ * the index stores a signature with one bit per trigram hash, so a block can only contain a term if all bits of
+ * the term's trigrams are set. Searches then read only the candidate blocks plus the part of the file that has
+ * not been indexed yet.
+ * <p>
+ * The index of a file is only ever appended to: when the file grew, the last (possibly short) block and the new
+ * content are indexed again. When a file was replaced (e.g. by log rotation) its index is rebuilt.
+ */
+public class TrigramIndex {
+
+    public static final int BLOCK_SIZE = 64 * 1024;
+    public static final int SIGNATURE_BITS = 32 * 1024;
+
+    private static final int MAGIC = 0x4c564931;
+    private static final int SIGNATURE_LONGS = SIGNATURE_BITS / 64;
+    private static final int RECORD_SIZE = 8 + 4 + SIGNATURE_LONGS * 8;
+    private static final String SUFFIX = ".idx";
+
+    private final Path indexDirectory;
+    private final Map<Path, Object> locks = new ConcurrentHashMap<>();
+    private final AtomicLong indexedBytes = new AtomicLong();
+    private final AtomicLong indexingNanos = new AtomicLong();
+    private final AtomicLong searchedBlocks = new AtomicLong();
+    private final AtomicLong candidateBlocks = new AtomicLong();
+
+    public TrigramIndex(Path indexDirectory) {
+        this.indexDirectory = indexDirectory;
+    }
+
+    /**
+     * A part of a log file that needs to be searched.
+     */
+    public static class Range {
+        private final long offset;
+        private final long length;
+
+        Range(long offset, long length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getLength() {
+            return length;
+        }
+    }
+
+    /**
+     * Brings the index of the given file up to date and returns the parts of the file that may contain the term.
+     * Terms shorter than a trigram cannot be looked up, for those the whole file is returned.
+     */
+    public List<Range> candidates(Path file, byte[] term) throws IOException {
+        Path absoluteFile = file.toAbsolutePath();
+        synchronized (locks.computeIfAbsent(absoluteFile, key -> new Object())) {
+            BasicFileAttributes attributes = Files.readAttributes(absoluteFile, BasicFileAttributes.class);
+            List<Range> ranges = new ArrayList<>();
+            if (term.length < 3) {
+                ranges.add(new Range(0, attributes.size()));
+                return ranges;
+            }
+            Files.createDirectories(indexDirectory);
+            String fileKey = Objects.toString(attributes.fileKey(), "");
+            int headerSize = header(absoluteFile, fileKey).length;
+            long indexedLength = update(absoluteFile, fileKey, headerSize, attributes.size());
+            long[] termSignature = signature(term, 0, term.length);
+            Path indexFile = indexFile(absoluteFile);
+            try (DataInputStream records = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+                records.skipBytes(headerSize);
+                long blocks = (Files.size(indexFile) - headerSize) / RECORD_SIZE;
+                long[] signature = new long[SIGNATURE_LONGS];
+                for (long block = 0; block < blocks; block++) {
+                    long offset = records.readLong();
+                    int length = records.readInt();
+                    for (int i = 0; i < SIGNATURE_LONGS; i++) {
+                        signature[i] = records.readLong();
+                    }
+                    if (contains(signature, termSignature)) {
+                        addRange(ranges, offset, length);
+                        candidateBlocks.incrementAndGet();
+                    }
+                    searchedBlocks.incrementAndGet();
+                }
+            }
+            if (attributes.size() > indexedLength) {
+                addRange(ranges, indexedLength, attributes.size() - indexedLength);
+            }
+            return ranges;
+        }
+    }
+
+    public Map<String, Object> getStatistics() throws IOException {
+        long indexSize = 0;
+        int indexFiles = 0;
+        if (Files.isDirectory(indexDirectory)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(indexDirectory, "*" + SUFFIX)) {
+                for (Path indexFile : stream) {
+                    indexSize += Files.size(indexFile);
+                    indexFiles++;
+                }
+            }
+        }
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("indexFiles", indexFiles);
+        statistics.put("indexSizeBytes", indexSize);
+        statistics.put("indexedBytes", indexedBytes.get());
+        statistics.put("indexingMillis", indexingNanos.get() / 1_000_000);
+        statistics.put("indexingBytesPerSecond",
+                indexingNanos.get() > 0 ? indexedBytes.get() * 1_000_000_000 / indexingNanos.get() : 0);
+        statistics.put("searchedBlocks", searchedBlocks.get());
+        statistics.put("candidateBlocks", candidateBlocks.get());
+        return statistics;
+    }
+
+    private static void addRange(List<Range> ranges, long offset, long length) {
+        Range last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+        if (last != null && last.offset + last.length == offset) {
+            ranges.set(ranges.size() - 1, new Range(last.offset, last.length + length));
+        }
+        else {
+            ranges.add(new Range(offset, length));
+        }
+    }
+
+    /**
+     * @return number of bytes of the file covered by the index
+     */
+    private long update(Path file, String fileKey, int headerSize, long size) throws IOException {
+        Path indexFile = indexFile(file);
+        if (!Files.exists(indexFile) || !fileKey.equals(readFileKey(indexFile))) {
+            writeHeader(indexFile, file, fileKey);
+            prune();
+        }
+
+        long blocks = (Files.size(indexFile) - headerSize) / RECORD_SIZE;
+        long indexedLength = 0;
+        long lastBlockLength = 0;
+        if (blocks > 0) {
+            try (RandomAccessFile index = new RandomAccessFile(indexFile.toFile(), "r")) {
+                index.seek(headerSize + (blocks - 1) * RECORD_SIZE);
+                long offset = index.readLong();
+                lastBlockLength = index.readInt();
+                indexedLength = offset + lastBlockLength;
+            }
+        }
+        if (size < indexedLength) {
+            // file was truncated, start over
+            writeHeader(indexFile, file, fileKey);
+            return update(file, fileKey, headerSize, size);
+        }
+        if (size == indexedLength) {
+            return indexedLength;
+        }
+        if (blocks > 0 && lastBlockLength < BLOCK_SIZE) {
+            // re-index the short last block together with the appended content
+            blocks--;
+            indexedLength -= lastBlockLength;
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.WRITE)) {
+            channel.truncate(headerSize + blocks * RECORD_SIZE);
+        }
+        return indexFrom(file, indexFile, indexedLength, size);
+    }
+
+    private long indexFrom(Path file, Path indexFile, long offset, long size) throws IOException {
+        long start = System.nanoTime();
+        long indexedUntil = offset;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             InputStream input = new BufferedInputStream(Channels.newInputStream(channel.position(offset)));
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                     Files.newOutputStream(indexFile, StandardOpenOption.APPEND)))) {
+            byte[] buffer = new byte[2 * BLOCK_SIZE];
+            int length = 0;
+            long remaining = size - offset;
+            while (remaining > 0) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int read = input.read(buffer, length, (int) Math.min(buffer.length - length, remaining));
+                if (read == -1) {
+                    break;
+                }
+                length += read;
+                remaining -= read;
+                int blockEnd;
+                while ((blockEnd = lineBreakAfter(buffer, BLOCK_SIZE - 1, length)) > 0) {
+                    writeRecord(output, indexedUntil, buffer, blockEnd);
+                    indexedUntil += blockEnd;
+                    System.arraycopy(buffer, blockEnd, buffer, 0, length - blockEnd);
+                    length -= blockEnd;
+                }
+            }
+            int lastLineBreak = length - 1;
+            while (lastLineBreak >= 0 && buffer[lastLineBreak] != '\n') {
+                lastLineBreak--;
+            }
+            if (lastLineBreak >= 0) {
+                // index complete lines only, the rest may still be written to
+                writeRecord(output, indexedUntil, buffer, lastLineBreak + 1);
+                indexedUntil += lastLineBreak + 1;
+            }
+        }
+        indexedBytes.addAndGet(indexedUntil - offset);
+        indexingNanos.addAndGet(System.nanoTime() - start);
+        return indexedUntil;
+    }
+
+    /**
+     * @return offset after the first line break at or after {@code from}, or -1
+     */
+    private static int lineBreakAfter(byte[] buffer, int from, int length) {
+        for (int i = from; i < length; i++) {
+            if (buffer[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static void writeRecord(DataOutputStream output, long offset, byte[] block, int length) throws IOException {
+        output.writeLong(offset);
+        output.writeInt(length);
+        for (long word : signature(block, 0, length)) {
+            output.writeLong(word);
+        }
+    }
+
+    private static long[] signature(byte[] bytes, int start, int end) {
+        long[] signature = new long[SIGNATURE_LONGS];
+        for (int i = start; i + 2 < end; i++) {
+            int gram = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8 | (bytes[i + 2] & 0xff);
+            int bit = (gram * 0x9E3779B1) >>> (32 - Integer.numberOfTrailingZeros(SIGNATURE_BITS));
+            signature[bit >>> 6] |= 1L << bit;
+        }
+        return signature;
+    }
+
+    private static boolean contains(long[] signature, long[] termSignature) {
+        for (int i = 0; i < termSignature.length; i++) {
+            if ((signature[i] & termSignature[i]) != termSignature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Path indexFile(Path file) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(file.toString().getBytes("UTF-8"));
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest) {
+                name.append(String.format("%02x", b));
+            }
+            return indexDirectory.resolve(name + SUFFIX);
+        } catch (NoSuchAlgorithmException | IOException e) {
+            throw new IllegalStateException("unable to create index file name", e);
+        }
+    }
+
+    private static byte[] header(Path file, String fileKey) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(MAGIC);
+            output.writeInt(SIGNATURE_BITS);
+            output.writeUTF(file.toString());
+            output.writeUTF(fileKey);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeHeader(Path indexFile, Path file, String fileKey) throws IOException {
+        Files.write(indexFile, header(file, fileKey));
+    }
+
+    private static String readFileKey(Path indexFile) throws IOException {
+        return readHeader(indexFile)[1];
+    }
+
+    /**
+     * @return indexed file path and file key, or empty strings if the index file is not readable
+     */
+    private static String[] readHeader(Path indexFile) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (input.readInt() != MAGIC || input.readInt() != SIGNATURE_BITS) {
+                return new String[]{"", ""};
+            }
+            return new String[]{input.readUTF(), input.readUTF()};
+        } catch (EOFException e) {
+            return new String[]{"", ""};
+        }
+    }
+
+    /**
+     * Removes index files of log files that no longer exist.
+     */
+    private void prune() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(indexDirectory, "*" + SUFFIX)) {
+            for (Path indexFile : stream) {
+                String indexedFile = readHeader(indexFile)[0];
+                if (indexedFile.isEmpty() || !Files.exists(Paths.get(indexedFile))) {
+                    Files.deleteIfExists(indexFile);
+                }
+            }
+        }
+    }
+}
@@ -2,7 +2,9 @@ package eu.hinsch.spring.boot.actuator.logview;
 
 import org.apache.commons.io.IOUtils;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
@@ -11,7 +13,6 @@ import java.nio.file.attribute.FileTime;
 import java.util.Date;
 import java.util.List;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import static java.util.stream.Collectors.toList;
 
@@ -20,6 +21,16 @@ import static java.util.stream.Collectors.toList;
 */
 public class ZipArchiveFileProvider extends AbstractFileProvider {
 
+    private final ZipFileCache zipFileCache;
+
+    public ZipArchiveFileProvider() {
+        this(new ZipFileCache(ZipFileCache.DEFAULT_MAX_OPEN_FILES));
+    }
+
+    public ZipArchiveFileProvider(ZipFileCache zipFileCache) {
+        this.zipFileCache = zipFileCache;
+    }
+
     @Override
     public boolean canHandle(Path folder) {
         return isZip(folder);
@@ -27,10 +38,11 @@ public class ZipArchiveFileProvider extends AbstractFileProvider {
 
     @Override
     public List<FileEntry> getFileEntries(Path folder) throws IOException {
-        ZipFile zipFile = new ZipFile(folder.toFile());
-        return zipFile.stream()
-                .map(ZipArchiveFileProvider::createFileEntry)
-                .collect(toList());
+        try (ZipFileCache.Handle handle = zipFileCache.open(folder)) {
+            return handle.getZipFile().stream()
+                    .map(ZipArchiveFileProvider::createFileEntry)
+                    .collect(toList());
+        }
     }
 
     private static FileEntry createFileEntry(ZipEntry entry) {
@@ -50,8 +62,63 @@ public class ZipArchiveFileProvider extends AbstractFileProvider {
 
     @Override
     public void streamContent(Path folder, String filename, OutputStream stream) throws IOException {
-        ZipFile zipFile = new ZipFile(folder.toFile());
-        ZipEntry entry = zipFile.getEntry(filename);
-        IOUtils.copy(zipFile.getInputStream(entry), stream);
+        try (ZipFileCache.Handle handle = zipFileCache.open(folder);
+             InputStream inputStream = handle.getZipFile().getInputStream(handle.getZipFile().getEntry(filename))) {
+            IOUtils.copy(inputStream, stream);
+        }
+    }
+
+    /**
+     * Ranges are only supported for entries stored without compression, those can be skipped without reading.
+     */
+    @Override
+    public long rangeLength(Path folder, String filename) throws IOException {
+        try (ZipFileCache.Handle handle = zipFileCache.open(folder)) {
+            ZipEntry entry = handle.getZipFile().getEntry(filename);
+            return entry != null && entry.getMethod() == ZipEntry.STORED ? entry.getSize() : -1;
+        }
+    }
+
+    @Override
+    public void streamContent(Path folder, String filename, OutputStream stream, long offset, long length)
+            throws IOException {
+        try (ZipFileCache.Handle handle = zipFileCache.open(folder);
+             InputStream inputStream = handle.getZipFile().getInputStream(handle.getZipFile().getEntry(filename))) {
+            long remaining = offset;
+            while (remaining > 0) {
+                long skipped = inputStream.skip(remaining);
+                if (skipped <= 0) {
+                    throw new EOFException("range starts behind the end of " + filename);
+                }
+                remaining -= skipped;
+            }
+            IOUtils.copyLarge(inputStream, stream, 0, length);
+        }
+    }
+
+    @Override
+    public List<OrderedParallelSearch.Task> searchTasks(Path folder, SearchContext search) throws IOException {
+        try (ZipFileCache.Handle handle = zipFileCache.open(folder)) {
+            return handle.getZipFile().stream()
+                    .filter(entry -> !entry.isDirectory())
+                    .map(ZipEntry::getName)
+                    .filter(search::includes)
+                    .map(name -> (OrderedParallelSearch.Task) output -> searchEntry(folder, name, search, output))
+                    .collect(toList());
+        }
+    }
+
+    private void searchEntry(Path folder, String name, SearchContext search, OutputStream output) throws IOException {
+        String displayName = search.displayName(folder, name);
+        long start = search.startOffset(displayName);
+        if (start < 0 || search.isDone()) {
+            return;
+        }
+        // every entry gets its own stream so entries can be decompressed in parallel
+        try (ZipFileCache.Handle handle = zipFileCache.open(folder);
+             InputStream inputStream = handle.getZipFile().getInputStream(handle.getZipFile().getEntry(name))) {
+            IOUtils.skipFully(inputStream, start);
+            search.searchStream(inputStream, start, displayName, output);
+        }
     }
 }
@@ -0,0 +1,164 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipFile;
+
+/**
+ * Bounded cache of open zip files, so the central directory of an archive is only read once and listing, viewing
+ * and searching it does not open a file descriptor each time.
+ * <p>
+ * Zip files are cached by path and modification time, an archive that changed is opened again. When more than the
+ * maximum number of archives are open, the least recently used one is evicted. Every {@link #open(Path)} holds a
+ * reference to the zip file until the returned handle is closed, an evicted zip file is only closed once the last
+ * reference is gone, so streams read from it stay usable.
+ */
+public class ZipFileCache implements Closeable {
+
+    public static final int DEFAULT_MAX_OPEN_FILES = 32;
+
+    private final int maxOpenFiles;
+    // in access order, guarded by itself
+    private final LinkedHashMap<Path, CachedZipFile> zipFiles = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ZipFileCache(int maxOpenFiles) {
+        this.maxOpenFiles = maxOpenFiles;
+    }
+
+    /**
+     * @return handle to the open zip file, has to be closed when the zip file and its streams are no longer used
+     */
+    public Handle open(Path archive) throws IOException {
+        Path absoluteArchive = archive.toAbsolutePath();
+        long lastModified = Files.readAttributes(absoluteArchive, BasicFileAttributes.class)
+                .lastModifiedTime().toMillis();
+        synchronized (zipFiles) {
+            CachedZipFile cached = zipFiles.get(absoluteArchive);
+            if (cached != null && cached.lastModified == lastModified) {
+                hits.incrementAndGet();
+                return cached.acquire();
+            }
+        }
+        misses.incrementAndGet();
+        // opened outside the lock, reading the central directory of a large archive must not block other archives
+        CachedZipFile opened = new CachedZipFile(new ZipFile(absoluteArchive.toFile()), lastModified);
+        synchronized (zipFiles) {
+            CachedZipFile cached = zipFiles.get(absoluteArchive);
+            if (cached != null && cached.lastModified == lastModified) {
+                // opened concurrently
+                opened.evict();
+                return cached.acquire();
+            }
+            if (cached != null) {
+                zipFiles.remove(absoluteArchive).evict();
+            }
+            zipFiles.put(absoluteArchive, opened);
+            Handle handle = opened.acquire();
+            evictLeastRecentlyUsed();
+            return handle;
+        }
+    }
+
+    private void evictLeastRecentlyUsed() throws IOException {
+        Iterator<CachedZipFile> iterator = zipFiles.values().iterator();
+        while (zipFiles.size() > maxOpenFiles && iterator.hasNext()) {
+            CachedZipFile eldest = iterator.next();
+            iterator.remove();
+            eldest.evict();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return number of open zip files, hits, misses and evictions
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        synchronized (zipFiles) {
+            statistics.put("openFiles", zipFiles.size());
+        }
+        statistics.put("hits", hits.get());
+        statistics.put("misses", misses.get());
+        statistics.put("evictions", evictions.get());
+        return statistics;
+    }
+
+    /**
+     * Evicts all zip files, each is closed once the last handle to it is closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (zipFiles) {
+            for (CachedZipFile cached : zipFiles.values()) {
+                cached.evict();
+            }
+            zipFiles.clear();
+        }
+    }
+
+    /**
+     * Reference to a cached zip file.
+     */
+    public static class Handle implements Closeable {
+        private final CachedZipFile cached;
+        private boolean closed;
+
+        Handle(CachedZipFile cached) {
+            this.cached = cached;
+        }
+
+        public ZipFile getZipFile() {
+            return cached.zipFile;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                cached.release();
+            }
+        }
+    }
+
+    private static class CachedZipFile {
+        private final ZipFile zipFile;
+        private final long lastModified;
+        // guarded by this
+        private int references;
+        private boolean evicted;
+
+        CachedZipFile(ZipFile zipFile, long lastModified) {
+            this.zipFile = zipFile;
+            this.lastModified = lastModified;
+        }
+
+        synchronized Handle acquire() {
+            references++;
+            return new Handle(this);
+        }
+
+        synchronized void release() throws IOException {
+            references--;
+            if (evicted && references == 0) {
+                zipFile.close();
+            }
+        }
+
+        synchronized void evict() throws IOException {
+            evicted = true;
+            if (references == 0) {
+                zipFile.close();
+            }
+        }
+    }
+}
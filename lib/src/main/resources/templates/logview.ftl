@@ -23,13 +23,14 @@
                                 <label>Current location</label>
                                 <p class="form-control-static">${currentFolder}</p>
                             </div>
-                            <#if base == "">
-                                <div class="form-group">
-                                    <label for="term">Search</label>
-                                    <input class="form-control" id="term" name="term" type="text"/>
-                                </div>
-                                <button class="btn btn-default">Search</button>
-                            </#if>
+                            <div class="form-group">
+                                <label for="term">Search</label>
+                                <input class="form-control" id="term" name="term" type="text"/>
+                                <#if searchBase != "">
+                                    <input name="base" type="hidden" value="${searchBase?html}"/>
+                                </#if>
+                            </div>
+                            <button class="btn btn-default">Search</button>
                         </form>
                     </div>
                 </div>
@@ -84,6 +85,16 @@
                         </tr>
                     </#list>
                 </table>
+                <#if offset gt 0 || hasMore>
+                <div class="panel-footer">
+                    <#if offset gt 0>
+                    <a href="?sortBy=${sortBy}&desc=${desc?c}&base=${base}&offset=<#if offset gt limit>${(offset - limit)?c}<#else>0</#if>&limit=${limit?c}">Previous</a>
+                    </#if>
+                    <#if hasMore>
+                    <a href="?sortBy=${sortBy}&desc=${desc?c}&base=${base}&offset=${(offset + limit)?c}&limit=${limit?c}">Next</a>
+                    </#if>
+                </div>
+                </#if>
             </div>
         </div>
     </body>
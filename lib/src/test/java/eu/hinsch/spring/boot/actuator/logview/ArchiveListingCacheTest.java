@@ -0,0 +1,160 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class ArchiveListingCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void shouldLoadListingOnlyOnce() throws Exception {
+        // given
+        ArchiveListingCache cache = new ArchiveListingCache(10, 100, null);
+        Path archive = temporaryFolder.newFile("a.tar.gz").toPath();
+
+        // when
+        cache.getFileEntries(archive, () -> load("A.log"));
+        List<FileEntry> entries = cache.getFileEntries(archive, () -> load("A.log"));
+
+        // then
+        assertThat(loads.get(), is(1));
+        assertThat(entries, hasSize(1));
+        assertThat(entries.get(0).getFilename(), is("A.log"));
+        assertThat(cache.getStatistics().get("hits"), is(1L));
+    }
+
+    @Test
+    public void shouldLoadChangedArchiveAgain() throws Exception {
+        // given
+        ArchiveListingCache cache = new ArchiveListingCache(10, 100, null);
+        Path archive = temporaryFolder.newFile("a.tar.gz").toPath();
+        cache.getFileEntries(archive, () -> load("A.log"));
+
+        // when
+        Files.write(archive, new byte[10]);
+        List<FileEntry> entries = cache.getFileEntries(archive, () -> load("B.log"));
+
+        // then
+        assertThat(loads.get(), is(2));
+        assertThat(entries.get(0).getFilename(), is("B.log"));
+    }
+
+    @Test
+    public void shouldEvictByArchiveCount() throws Exception {
+        // given
+        ArchiveListingCache cache = new ArchiveListingCache(1, 100, null);
+        Path a = temporaryFolder.newFile("a.tar.gz").toPath();
+        Path b = temporaryFolder.newFile("b.tar.gz").toPath();
+
+        // when
+        cache.getFileEntries(a, () -> load("A.log"));
+        cache.getFileEntries(b, () -> load("B.log"));
+        cache.getFileEntries(a, () -> load("A.log"));
+
+        // then
+        assertThat(loads.get(), is(3));
+        assertThat(cache.getStatistics().get("evictions"), is(2L));
+        assertThat(cache.getStatistics().get("archives"), is(1));
+    }
+
+    @Test
+    public void shouldEvictByEntryCount() throws Exception {
+        // given
+        ArchiveListingCache cache = new ArchiveListingCache(10, 3, null);
+        Path a = temporaryFolder.newFile("a.tar.gz").toPath();
+        Path b = temporaryFolder.newFile("b.tar.gz").toPath();
+
+        // when
+        cache.getFileEntries(a, () -> load("A.log", "B.log"));
+        cache.getFileEntries(b, () -> load("C.log", "D.log"));
+
+        // then
+        assertThat(cache.getStatistics().get("evictions"), is(1L));
+        assertThat(cache.getStatistics().get("entries"), is(2));
+    }
+
+    @Test
+    public void shouldLoadPersistedListingAfterRestart() throws Exception {
+        // given
+        Path sidecars = temporaryFolder.newFolder("sidecars").toPath();
+        Path archive = temporaryFolder.newFile("a.tar.gz").toPath();
+        new ArchiveListingCache(10, 100, sidecars).getFileEntries(archive, () -> load("A.log"));
+
+        // when
+        ArchiveListingCache restarted = new ArchiveListingCache(10, 100, sidecars);
+        List<FileEntry> entries = restarted.getFileEntries(archive, () -> load("A.log"));
+
+        // then
+        assertThat(loads.get(), is(1));
+        assertThat(entries.get(0).getDisplayFilename(), is("A.log"));
+        assertThat(entries.get(0).getSize(), is(42L));
+        assertThat(entries.get(0).getModified().toMillis(), is(1000L));
+        assertThat(entries.get(0).getFileType(), is(FileType.FILE));
+        assertThat(restarted.getStatistics().get("sidecarHits"), is(1L));
+    }
+
+    @Test
+    public void shouldListArchiveIfSidecarDirectoryIsReadOnly() throws Exception {
+        // given
+        Path sidecars = temporaryFolder.newFolder("sidecars").toPath();
+        assumeTrue(sidecars.toFile().setWritable(false) && !Files.isWritable(sidecars));
+        Path archive = temporaryFolder.newFile("a.tar.gz").toPath();
+
+        // when
+        List<FileEntry> entries = new ArchiveListingCache(10, 100, sidecars).getFileEntries(archive,
+                () -> load("A.log"));
+
+        // then
+        assertThat(entries, hasSize(1));
+        assertThat(sidecars.toFile().list().length, is(0));
+    }
+
+    @Test
+    public void shouldListArchiveIfSidecarDirectoryCannotBeCreated() throws Exception {
+        // given
+        Path sidecars = temporaryFolder.newFile("not-a-directory").toPath().resolve("sidecars");
+        Path archive = temporaryFolder.newFile("a.tar.gz").toPath();
+        ArchiveListingCache cache = new ArchiveListingCache(10, 100, sidecars);
+
+        // when
+        List<FileEntry> entries = cache.getFileEntries(archive, () -> load("A.log"));
+
+        // then
+        assertThat(entries, hasSize(1));
+        assertThat(cache.getFileEntries(archive, () -> load("A.log")), hasSize(1));
+        assertThat(loads.get(), is(1));
+    }
+
+    private List<FileEntry> load(String... names) throws IOException {
+        loads.incrementAndGet();
+        List<FileEntry> entries = new ArrayList<>();
+        for (String name : names) {
+            FileEntry entry = new FileEntry();
+            entry.setFilename(name);
+            entry.setDisplayFilename(name);
+            entry.setSize(42);
+            entry.setModified(FileTime.fromMillis(1000));
+            entry.setFileType(FileType.FILE);
+            entries.add(entry);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,220 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DirectoryListingCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void shouldLoadEntriesOnlyOnce() throws Exception {
+        // given
+        DirectoryListingCache cache = new DirectoryListingCache(60000, this::load);
+        temporaryFolder.newFile("a.log");
+        temporaryFolder.newFile("b.log");
+
+        // when
+        cache.getFileEntries(temporaryFolder.getRoot().toPath(), SortBy.FILENAME, false);
+        List<FileEntry> entries = cache.getFileEntries(temporaryFolder.getRoot().toPath(), SortBy.SIZE, true);
+
+        // then
+        assertThat(loads.get(), is(2));
+        assertThat(entries, hasSize(2));
+    }
+
+    @Test
+    public void shouldKeepSortedViews() throws Exception {
+        // given
+        DirectoryListingCache cache = new DirectoryListingCache(60000, this::load);
+        Files.write(temporaryFolder.newFile("a.log").toPath(), new byte[2]);
+        Files.write(temporaryFolder.newFile("b.log").toPath(), new byte[1]);
+        Path folder = temporaryFolder.getRoot().toPath();
+
+        // when
+        List<FileEntry> bySize = cache.getFileEntries(folder, SortBy.SIZE, false);
+        List<FileEntry> byName = cache.getFileEntries(folder, SortBy.FILENAME, true);
+
+        // then
+        assertThat(names(bySize), contains("b.log", "a.log"));
+        assertThat(names(byName), contains("b.log", "a.log"));
+        assertThat(names(cache.getFileEntries(folder, SortBy.SIZE, false)), contains("b.log", "a.log"));
+        assertThat(cache.getStatistics().get("sorts"), is(2L));
+    }
+
+    @Test
+    public void shouldMoveModifiedFileWithoutSortingAgain() throws Exception {
+        // given
+        DirectoryListingCache cache = new DirectoryListingCache(60000, this::load);
+        Files.write(temporaryFolder.newFile("a.log").toPath(), new byte[1]);
+        Files.write(temporaryFolder.newFile("b.log").toPath(), new byte[2]);
+        Files.write(temporaryFolder.newFile("c.log").toPath(), new byte[3]);
+        Path folder = temporaryFolder.getRoot().toPath();
+        cache.getFileEntries(folder, SortBy.SIZE, false);
+        cache.getFileEntries(folder, SortBy.FILENAME, true);
+
+        // when
+        Files.write(folder.resolve("a.log"), new byte[4], StandardOpenOption.APPEND);
+        Files.delete(folder.resolve("b.log"));
+        Files.write(temporaryFolder.newFile("d.log").toPath(), new byte[2]);
+
+        // then
+        // watch events are delivered asynchronously (polled on some platforms)
+        long timeout = System.currentTimeMillis() + 15000;
+        List<FileEntry> bySize;
+        do {
+            Thread.sleep(50);
+            bySize = cache.getFileEntries(folder, SortBy.SIZE, false);
+        } while (!names(bySize).equals(asList("d.log", "c.log", "a.log")) && System.currentTimeMillis() < timeout);
+        assertThat(names(bySize), contains("d.log", "c.log", "a.log"));
+        assertThat(names(cache.getFileEntries(folder, SortBy.FILENAME, true)), contains("d.log", "c.log", "a.log"));
+        assertThat(cache.getStatistics().get("sorts"), is(2L));
+    }
+
+    @Test
+    public void shouldCopyPageOfSortedView() throws Exception {
+        // given
+        DirectoryListingCache cache = new DirectoryListingCache(60000, this::load);
+        temporaryFolder.newFile("a.log");
+        temporaryFolder.newFile("b.log");
+        temporaryFolder.newFile("c.log");
+        Path folder = temporaryFolder.getRoot().toPath();
+
+        // when
+        List<FileEntry> page = cache.getFileEntries(folder, SortBy.FILENAME, true, 1, 5);
+
+        // then
+        assertThat(names(page), contains("b.log", "a.log"));
+        assertThat(cache.getFileEntries(folder, SortBy.FILENAME, true, 3, 5), hasSize(0));
+        assertThat(cache.getStatistics().get("sorts"), is(1L));
+    }
+
+    @Test
+    public void shouldPickUpChangedFiles() throws Exception {
+        // given
+        DirectoryListingCache cache = new DirectoryListingCache(60000, this::load);
+        temporaryFolder.newFile("a.log");
+        Path folder = temporaryFolder.getRoot().toPath();
+        cache.getFileEntries(folder, SortBy.FILENAME, false);
+
+        // when
+        temporaryFolder.newFile("b.log");
+
+        // then
+        // watch events are delivered asynchronously (polled on some platforms)
+        long timeout = System.currentTimeMillis() + 15000;
+        List<FileEntry> entries;
+        do {
+            Thread.sleep(50);
+            entries = cache.getFileEntries(folder, SortBy.FILENAME, false);
+        } while (entries.size() < 2 && System.currentTimeMillis() < timeout);
+        assertThat(names(entries), contains("a.log", "b.log"));
+    }
+
+    @Test
+    public void shouldReloadExpiredListing() throws Exception {
+        // given
+        DirectoryListingCache cache = new DirectoryListingCache(1, this::load);
+        temporaryFolder.newFile("a.log");
+        Path folder = temporaryFolder.getRoot().toPath();
+        cache.getFileEntries(folder, SortBy.FILENAME, false);
+
+        // when
+        Thread.sleep(10);
+        cache.getFileEntries(folder, SortBy.FILENAME, false);
+
+        // then
+        assertThat(loads.get(), is(2));
+    }
+
+    @Test
+    public void shouldNotReturnListingWhileItIsRead() throws Exception {
+        // given
+        temporaryFolder.newFile("a.log");
+        temporaryFolder.newFile("b.log");
+        Path folder = temporaryFolder.getRoot().toPath();
+        // expires right away, so listings are replaced while they are requested concurrently
+        DirectoryListingCache cache = new DirectoryListingCache(0, this::load);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Callable<Integer> smallestListing = () -> {
+            int smallest = Integer.MAX_VALUE;
+            for (int i = 0; i < 2000; i++) {
+                smallest = Math.min(smallest, cache.getFileEntries(folder, SortBy.FILENAME, i % 2 == 0).size());
+            }
+            return smallest;
+        };
+
+        // when
+        List<Future<Integer>> results = executor.invokeAll(Collections.nCopies(4, smallestListing));
+
+        // then
+        for (Future<Integer> result : results) {
+            assertThat(result.get(), is(2));
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldStopWatchThreadWhenClosed() throws Exception {
+        // given
+        Set<Thread> before = watchThreads();
+        DirectoryListingCache cache = new DirectoryListingCache(60000, this::load);
+        cache.getFileEntries(temporaryFolder.getRoot().toPath(), SortBy.FILENAME, false);
+        Set<Thread> started = watchThreads();
+        started.removeAll(before);
+
+        // when
+        cache.close();
+
+        // then
+        for (Thread thread : started) {
+            thread.join(5000);
+            assertThat(thread.isAlive(), is(false));
+        }
+        assertThat(cache.getFileEntries(temporaryFolder.getRoot().toPath(), SortBy.FILENAME, false), hasSize(0));
+    }
+
+    private static Set<Thread> watchThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("logview-listing-watch"))
+                .collect(toSet());
+    }
+
+    private FileEntry load(Path path) throws IOException {
+        loads.incrementAndGet();
+        FileEntry entry = new FileEntry();
+        entry.setFilename(path.getFileName().toString());
+        entry.setSize(Files.size(path));
+        entry.setModified(Files.getLastModifiedTime(path));
+        return entry;
+    }
+
+    private static List<String> names(List<FileEntry> entries) {
+        return entries.stream().map(FileEntry::getFilename).collect(toList());
+    }
+}
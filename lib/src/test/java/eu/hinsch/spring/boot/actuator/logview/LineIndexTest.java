@@ -0,0 +1,127 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LineIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final LineIndex index = new LineIndex();
+
+    @Test
+    public void shouldFindLinesWhileAndAfterIndexing() throws Exception {
+        // given lines of different length over a few checkpoint intervals
+        Path file = temporaryFolder.newFile().toPath();
+        long[] offsets = writeLines(file, 0, 35000);
+
+        // when the first lookup starts indexing
+        long first = index.offsetOf(file, 25001);
+        Thread.sleep(500);
+
+        // then
+        assertThat(first, is(offsets[25001]));
+        assertThat(index.offsetOf(file, 25001), is(offsets[25001]));
+        assertThat(index.offsetOf(file, 30000), is(offsets[30000]));
+        assertThat(index.offsetOf(file, 0), is(0L));
+    }
+
+    @Test
+    public void shouldFindLinesAppendedLater() throws Exception {
+        // given
+        Path file = temporaryFolder.newFile().toPath();
+        writeLines(file, 0, 15000);
+        index.offsetOf(file, 1);
+        Thread.sleep(500);
+
+        // when
+        long[] offsets = writeLines(file, 15000, 25000);
+
+        // then
+        assertThat(index.offsetOf(file, 24999), is(offsets[24999 - 15000]));
+        Thread.sleep(500);
+        assertThat(index.offsetOf(file, 20000), is(offsets[20000 - 15000]));
+    }
+
+    @Test
+    public void shouldReturnEndOfFileBehindLastLine() throws Exception {
+        // given
+        Path file = temporaryFolder.newFile().toPath();
+        writeLines(file, 0, 10);
+
+        // when
+        long offset = index.offsetOf(file, 20);
+
+        // then
+        assertThat(offset, is(Files.size(file)));
+    }
+
+    @Test
+    public void shouldIndexReplacedFileAgain() throws Exception {
+        // given
+        Path file = temporaryFolder.newFile().toPath();
+        writeLines(file, 0, 20000);
+        index.offsetOf(file, 1);
+        Thread.sleep(500);
+
+        // when
+        Files.delete(file);
+        Files.write(file, "a\nb\nc\n".getBytes(StandardCharsets.UTF_8));
+
+        // then
+        assertThat(index.offsetOf(file, 2), is(4L));
+    }
+
+    @Test
+    public void shouldIndexFileTruncatedAndWrittenPastOldSizeAgain() throws Exception {
+        // given
+        Path file = temporaryFolder.newFile().toPath();
+        writeLines(file, 0, 25000);
+        index.offsetOf(file, 1);
+        Thread.sleep(500);
+
+        // when truncated in place (like copytruncate) and regrown with longer lines beyond the old size
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(0);
+        }
+        long[] offsets = writeLines(file, 100000, 130000);
+
+        // then
+        assertThat(index.offsetOf(file, 20001), is(offsets[20001]));
+        Thread.sleep(500);
+        assertThat(index.offsetOf(file, 20001), is(offsets[20001]));
+        assertThat(index.offsetOf(file, 29999), is(offsets[29999]));
+    }
+
+    /**
+     * @return offsets of the lines written, the first of them at index 0
+     */
+    private long[] writeLines(Path file, int from, int to) throws IOException {
+        long[] offsets = new long[to - from];
+        long start = Files.size(file);
+        long offset = start;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND)) {
+            for (int i = from; i < to; i++) {
+                offsets[i - from] = offset;
+                String line = "line " + i + (i % 7 == 0 ? " with some more text" : "") + "\n";
+                writer.write(line);
+                offset += line.length();
+            }
+        }
+        return offsets;
+    }
+}
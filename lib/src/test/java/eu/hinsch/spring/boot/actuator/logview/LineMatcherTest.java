@@ -0,0 +1,101 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LineMatcherTest {
+
+    @Test
+    public void shouldFindLiteral() {
+        byte[] data = "abcabdabe".getBytes();
+        assertThat(LineMatcher.literal("abd").find(ByteBuffer.wrap(data), 0, data.length), is(3));
+        assertThat(LineMatcher.literal("abe").find(ByteBuffer.wrap(data), 0, data.length), is(6));
+        assertThat(LineMatcher.literal("abf").find(ByteBuffer.wrap(data), 0, data.length), is(-1));
+    }
+
+    @Test
+    public void shouldRespectSearchRange() {
+        byte[] data = "abcabc".getBytes();
+        assertThat(LineMatcher.literal("abc").find(ByteBuffer.wrap(data), 1, data.length), is(3));
+        assertThat(LineMatcher.literal("abc").find(ByteBuffer.wrap(data), 1, 5), is(-1));
+    }
+
+    @Test
+    public void shouldFindLiteralInDirectBuffer() {
+        // given
+        ByteBuffer data = ByteBuffer.allocateDirect(9);
+        data.put("abcabdabe".getBytes());
+
+        // then
+        assertThat(LineMatcher.literal("abd").find(data, 0, data.capacity()), is(3));
+        assertThat(LineMatcher.literal("abf").find(data, 0, data.capacity()), is(-1));
+    }
+
+    @Test
+    public void shouldFindEmptyLiteralEverywhere() {
+        assertThat(LineMatcher.literal("").find(ByteBuffer.wrap("abc".getBytes()), 2, 3), is(2));
+    }
+
+    @Test
+    public void shouldExtractRequiredLiteralFromRegex() {
+        assertThat(RegexMatcher.requiredLiteral("foo"), is("foo"));
+        assertThat(RegexMatcher.requiredLiteral("ERROR .* at line \\d+"), is(" at line "));
+        assertThat(RegexMatcher.requiredLiteral("colou?r"), is("colo"));
+        assertThat(RegexMatcher.requiredLiteral("ab{0,2}cd"), is("cd"));
+        assertThat(RegexMatcher.requiredLiteral("ab{2}cd"), is("ab"));
+        assertThat(RegexMatcher.requiredLiteral("x+yz"), is("yz"));
+        assertThat(RegexMatcher.requiredLiteral("[abc]+defg(hij)?"), is("defg"));
+        assertThat(RegexMatcher.requiredLiteral("a\\.b"), is("a.b"));
+        assertThat(RegexMatcher.requiredLiteral("foo|bar"), is(""));
+        assertThat(RegexMatcher.requiredLiteral("(?i)foo"), is(""));
+        assertThat(RegexMatcher.requiredLiteral("x{3"), is("x"));
+    }
+
+    @Test
+    public void shouldNotTakeEscapeOperandsAsLiteral() {
+        assertThat(RegexMatcher.requiredLiteral("\\x41BC"), is("BC"));
+        assertThat(RegexMatcher.requiredLiteral("\\x{41}BC"), is("BC"));
+        assertThat(RegexMatcher.requiredLiteral("\\u0041BC"), is("BC"));
+        assertThat(RegexMatcher.requiredLiteral("\\0101BC"), is("BC"));
+        assertThat(RegexMatcher.requiredLiteral("\\cAbc"), is("bc"));
+        assertThat(RegexMatcher.requiredLiteral("\\k<name>xy"), is("xy"));
+        assertThat(RegexMatcher.requiredLiteral("\\p{Lu}xy"), is("xy"));
+        assertThat(RegexMatcher.requiredLiteral("\\N{LATIN SMALL LETTER A}xy"), is("xy"));
+    }
+
+    @Test
+    public void shouldMatchLinesWithEscapesTakingOperands() {
+        assertRegexMatches("\\x41BC", "xx ABC xx");
+        assertRegexMatches("\\x{41}BC", "xx ABC xx");
+        assertRegexMatches("\\u0041BC", "xx ABC xx");
+        assertRegexMatches("\\0101BC", "xx ABC xx");
+        assertRegexMatches("\\cAbc", "xx \u0001bc xx");
+        assertRegexMatches("(a)\\1BC", "xx aaBC xx");
+        assertRegexMatches("\\p{Lu}BC", "xx ABC xx");
+        assertRegexMatches("\\pLBC", "xx ABC xx");
+    }
+
+    private static void assertRegexMatches(String regex, String line) {
+        LineMatcher matcher = LineMatcher.regex(regex);
+        byte[] data = line.getBytes(StandardCharsets.UTF_8);
+        int candidate = matcher.find(ByteBuffer.wrap(data), 0, data.length);
+        assertThat(regex, candidate >= 0 && matcher.matches(ByteBuffer.wrap(data), 0, data.length), is(true));
+    }
+
+    @Test
+    public void shouldOnlyMatchCandidatesPassingRegex() {
+        // given
+        LineMatcher matcher = LineMatcher.regex("id=\\d+");
+        byte[] data = "id=x id=42".getBytes(StandardCharsets.UTF_8);
+
+        // then
+        assertThat(matcher.find(ByteBuffer.wrap(data), 0, data.length), is(0));
+        assertThat(matcher.matches(ByteBuffer.wrap(data), 0, data.length), is(true));
+        assertThat(matcher.matches(ByteBuffer.wrap(data), 0, 4), is(false));
+    }
+}
@@ -0,0 +1,151 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LineSearcherTest {
+
+    private static final String SEP = System.lineSeparator();
+
+    @Test
+    public void shouldFindMatchesAcrossBufferBoundaries() throws Exception {
+        // given
+        String content = "aaaa match1\nbbbbbbbbbb\nmatch2 cccc\n";
+
+        // when
+        String result = search("match", content, 8);
+
+        // then
+        assertThat(result, is("[f] aaaa match1" + SEP + "[f] match2 cccc" + SEP));
+    }
+
+    @Test
+    public void shouldMatchLastLineWithoutLineBreak() throws Exception {
+        assertThat(search("end", "first\nthe end", 4), is("[f] the end" + SEP));
+    }
+
+    @Test
+    public void shouldStripCarriageReturn() throws Exception {
+        assertThat(search("x", "x1\r\ny\r\nx2\r\n", 1024), is("[f] x1" + SEP + "[f] x2" + SEP));
+    }
+
+    @Test
+    public void shouldOnlyWriteLinesMatchingRegex() throws Exception {
+        // given
+        String content = "ERROR code=12\nERROR code=x\nINFO code=13\n";
+
+        // when
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new LineSearcher(LineMatcher.regex("ERROR code=\\d+"), null)
+                .search(new ByteArrayInputStream(content.getBytes()), 0, "f", out);
+
+        // then
+        assertThat(new String(out.toByteArray()), is("[f] ERROR code=12" + SEP));
+    }
+
+    @Test
+    public void shouldMatchMultibyteCharacters() throws Exception {
+        assertThat(search("gr\u00fc\u00dfe", "hallo\ngr\u00fc\u00dfe welt\n", 4), is("[f] gr\u00fc\u00dfe welt" + SEP));
+    }
+
+    @Test
+    public void shouldWriteJsonRecords() throws Exception {
+        // given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LineSearcher searcher = new LineSearcher(LineMatcher.literal("match"), null, 1, 0);
+        searcher.setJson(true);
+
+        // when
+        searcher.search(new ByteArrayInputStream("before\r\nmatch \u00e4\n".getBytes(StandardCharsets.UTF_8)), 0,
+                "f", out);
+
+        // then
+        assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8),
+                is("{\"file\":\"f\",\"offset\":0,\"match\":false,\"line\":\"before\"}\n"
+                        + "{\"file\":\"f\",\"offset\":8,\"match\":true,\"line\":\"match \u00e4\"}\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectTooManyContextLines() throws Exception {
+        new LineSearcher(LineMatcher.literal("match"), null, 1000000000, 0);
+    }
+
+    @Test
+    public void shouldCountMatches() throws Exception {
+        // given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // when
+        long matches = new LineSearcher("a").search(new ByteArrayInputStream("a\nb\na\n".getBytes()), 0, "f", out);
+
+        // then
+        assertThat(matches, is(2L));
+    }
+
+    @Test
+    public void shouldStopWhenPageIsFull() throws Exception {
+        // given
+        SearchPage page = new SearchPage(2, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // when
+        long matches = new LineSearcher(LineMatcher.literal("a"), page)
+                .search(new ByteArrayInputStream("a1\nb\na2\na3\n".getBytes()), 10, "f", out);
+
+        // then
+        assertThat(matches, is(2L));
+        assertThat(page.isFull(), is(true));
+        assertThat(page.getNextCursor(), is(SearchPage.cursor("f", 18)));
+    }
+
+    @Test
+    public void shouldWriteContextLines() throws Exception {
+        // given
+        String content = "l1\nl2\nerror1\nl4\nl5\nl6\nl7\nerror2\nl9\nerror3\nl11\nl12\n";
+
+        // when
+        String result = search("error", content, 1, 1, 8);
+
+        // then
+        assertThat(result, is("[f] l2" + SEP + "[f] error1" + SEP + "[f] l4" + SEP
+                + "--" + SEP
+                + "[f] l7" + SEP + "[f] error2" + SEP + "[f] l9" + SEP + "[f] error3" + SEP + "[f] l11" + SEP));
+    }
+
+    @Test
+    public void shouldTakeContextFromPreviousChunks() throws Exception {
+        // given a buffer holding only a few lines at a time
+        String content = "first\nat a\nat b\nat c\nException\nlast\n";
+
+        // when
+        String result = search("Exception", content, 3, 0, 8);
+
+        // then
+        assertThat(result, is("[f] at a" + SEP + "[f] at b" + SEP + "[f] at c" + SEP + "[f] Exception" + SEP));
+    }
+
+    @Test
+    public void shouldNotRepeatLinesOfOverlappingContexts() throws Exception {
+        assertThat(search("x", "x1\na\nx2\nb\n", 2, 0, 4), is("[f] x1" + SEP + "[f] a" + SEP + "[f] x2" + SEP));
+    }
+
+    private String search(String term, String content, int before, int after, int bufferSize) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new LineSearcher(LineMatcher.literal(term), null, before, after, bufferSize)
+                .search(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), 0, "f", out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private String search(String term, String content, int bufferSize) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new LineSearcher(LineMatcher.literal(term), null, 0, 0, bufferSize)
+                .search(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), 0, "f", out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,201 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LogFollowerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final LogFollower follower = new LogFollower(10);
+
+    @Test
+    public void shouldSendAppendedLines() throws Exception {
+        // given
+        Path file = createFile("line1\n");
+        QueueSink sink = new QueueSink();
+        follower.follow(file, 0, sink);
+        assertThat(sink.next(), is("id: 6\ndata: line1\n\n"));
+
+        // when
+        append(file, "line2\nline3\npartial");
+
+        // then
+        assertThat(sink.next(), is("id: 18\ndata: line2\ndata: line3\n\n"));
+        append(file, " line\n");
+        assertThat(sink.next(), is("id: 31\ndata: partial line\n\n"));
+    }
+
+    @Test
+    public void shouldShareReaderBetweenFollowers() throws Exception {
+        // given
+        Path file = createFile("line1\n");
+        QueueSink first = new QueueSink();
+        QueueSink second = new QueueSink();
+        follower.follow(file, 6, first);
+        follower.follow(file, 0, second);
+        assertThat(second.next(), is("id: 6\ndata: line1\n\n"));
+
+        // when
+        append(file, "line2\n");
+
+        // then
+        assertThat(first.next(), is("id: 12\ndata: line2\n\n"));
+        assertThat(second.next(), is("id: 12\ndata: line2\n\n"));
+        assertThat(follower.getFollowedFiles(), is(1));
+    }
+
+    @Test
+    public void shouldRestartAfterTruncation() throws Exception {
+        // given
+        Path file = createFile("old line\n");
+        QueueSink sink = new QueueSink();
+        follower.follow(file, 9, sink);
+        Thread.sleep(50);
+
+        // when
+        Files.write(file, "new\n".getBytes(StandardCharsets.UTF_8));
+
+        // then
+        assertThat(sink.next(), is("event: rotate\ndata:\n\n"));
+        assertThat(sink.next(), is("id: 4\ndata: new\n\n"));
+    }
+
+    @Test
+    public void shouldStopFollowingWhenCancelled() throws Exception {
+        // given
+        Path file = createFile("line1\n");
+        QueueSink sink = new QueueSink();
+        LogFollower.Follower subscription = follower.follow(file, 0, sink);
+        assertThat(sink.next(), is("id: 6\ndata: line1\n\n"));
+
+        // when
+        subscription.cancel();
+        append(file, "line2\n");
+        Thread.sleep(100);
+
+        // then
+        assertThat(sink.events.isEmpty(), is(true));
+        assertThat(follower.getFollowedFiles(), is(0));
+    }
+
+    @Test
+    public void shouldWaitUntilConnectionIsWritable() throws Exception {
+        // given
+        Path file = createFile("line1\n");
+        QueueSink sink = new QueueSink();
+        sink.ready = false;
+        LogFollower.Follower subscription = follower.follow(file, 0, sink);
+        Thread.sleep(100);
+        assertThat(sink.events.isEmpty(), is(true));
+
+        // when
+        sink.ready = true;
+        subscription.writePossible();
+
+        // then
+        assertThat(sink.next(), is("id: 6\ndata: line1\n\n"));
+    }
+
+    @Test
+    public void shouldDisconnectStalledFollowerWithoutHoldingUpOthers() throws Exception {
+        // given
+        LogFollower follower = new LogFollower(10, 100);
+        Path file = createFile("line1\n");
+        QueueSink stalled = new QueueSink();
+        stalled.ready = false;
+        QueueSink sink = new QueueSink();
+        follower.follow(file, 0, stalled);
+        follower.follow(file, 0, sink);
+        assertThat(sink.next(), is("id: 6\ndata: line1\n\n"));
+
+        // when
+        append(file, "line2\n");
+
+        // then
+        assertThat(sink.next(), is("id: 12\ndata: line2\n\n"));
+        long timeout = System.currentTimeMillis() + 5000;
+        while (!stalled.closed && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertThat(stalled.closed, is(true));
+        assertThat(stalled.events.isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldEndConnectionsWhenClosed() throws Exception {
+        // given
+        LogFollower follower = new LogFollower(10);
+        Path file = createFile("line1\n");
+        QueueSink sink = new QueueSink();
+        follower.follow(file, 0, sink);
+        assertThat(sink.next(), is("id: 6\ndata: line1\n\n"));
+
+        // when
+        follower.close();
+
+        // then
+        long timeout = System.currentTimeMillis() + 5000;
+        while (!sink.closed && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertThat(sink.closed, is(true));
+    }
+
+    @Test
+    public void shouldFormatCarriageReturnLinesAsEvent() {
+        byte[] lines = "a\r\nb\n".getBytes(StandardCharsets.UTF_8);
+        assertThat(new String(LogFollower.event(lines, lines.length, 5), StandardCharsets.UTF_8),
+                is("id: 5\ndata: a\ndata: b\n\n"));
+    }
+
+    private Path createFile(String content) throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static void append(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    private static class QueueSink implements LogFollower.Sink {
+        private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        private volatile boolean ready = true;
+        private volatile boolean closed;
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void send(byte[] event) {
+            events.add(new String(event, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        String next() throws InterruptedException {
+            String event = events.poll(5, TimeUnit.SECONDS);
+            return event != null ? event : "timeout";
+        }
+    }
+}
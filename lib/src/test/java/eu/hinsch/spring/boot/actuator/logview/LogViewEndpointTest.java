@@ -1,34 +1,54 @@
 package eu.hinsch.spring.boot.actuator.logview;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.catalina.ssi.ByteArrayServletOutputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.ui.ExtendedModelMap;
-import org.springframework.ui.Model;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 import static java.util.stream.Collectors.toList;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -38,15 +58,23 @@ public class LogViewEndpointTest {
     @Rule
     public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
+    @Rule
+    public TemporaryFolder indexFolder = new TemporaryFolder();
+
     @Rule
     public ExpectedException expectedException = ExpectedException.none();
 
+    @Mock
+    private HttpServletRequest request;
+
     @Mock
     private HttpServletResponse response;
 
     private LogViewEndpoint logViewEndpoint;
 
-    private Model model;
+    private static final long DAY = 24 * 60 * 60 * 1000;
+
+    private Map<String, Object> model;
     private long now;
 
     @Before
@@ -54,17 +82,21 @@ public class LogViewEndpointTest {
         MockitoAnnotations.initMocks(this);
         logViewEndpoint = new LogViewEndpoint(temporaryFolder.getRoot().getAbsolutePath(),
                 new LogViewEndpointAutoconfig.EndpointConfiguration().getStylesheets());
-        model = new ExtendedModelMap();
         now = new Date().getTime();
     }
 
+    @After
+    public void tearDown() throws Exception {
+        logViewEndpoint.close();
+    }
+
     @Test
     public void shouldReturnEmptyFileListForEmptyDirectory() throws Exception {
         // when
-        logViewEndpoint.list(model, SortBy.FILENAME, false, null);
+        model = logViewEndpoint.listModel(SortBy.FILENAME, false, null, 0, 1000);
 
         // then
-        assertThat(model.containsAttribute("files"), is(true));
+        assertThat(model.containsKey("files"), is(true));
         assertThat(getFileEntries(), hasSize(0));
     }
 
@@ -76,7 +108,7 @@ public class LogViewEndpointTest {
         createFile("C.log", "x", now);
 
         // when
-        logViewEndpoint.list(model, SortBy.FILENAME, false, null);
+        model = logViewEndpoint.listModel(SortBy.FILENAME, false, null, 0, 1000);
 
         // then
         assertThat(getFileNames(), contains("A.log", "B.log", "C.log"));
@@ -90,7 +122,7 @@ public class LogViewEndpointTest {
         createFile("C.log", "x", now);
 
         // when
-        logViewEndpoint.list(model, SortBy.FILENAME, true, null);
+        model = logViewEndpoint.listModel(SortBy.FILENAME, true, null, 0, 1000);
 
         // then
         assertThat(getFileNames(), contains("C.log", "B.log", "A.log"));
@@ -104,7 +136,7 @@ public class LogViewEndpointTest {
         createFile("C.log", "xxx", now);
 
         // when
-        logViewEndpoint.list(model, SortBy.SIZE, false, null);
+        model = logViewEndpoint.listModel(SortBy.SIZE, false, null, 0, 1000);
 
         // then
         assertThat(getFileNames(), contains("B.log", "A.log", "C.log"));
@@ -120,20 +152,90 @@ public class LogViewEndpointTest {
         createFile("C.log", "x", now - 5 * 60 * 1000);
 
         // when
-        logViewEndpoint.list(model, SortBy.MODIFIED, false, null);
+        model = logViewEndpoint.listModel(SortBy.MODIFIED, false, null, 0, 1000);
 
         // then
         assertThat(getFileNames(), contains("B.log", "C.log", "A.log"));
         assertThat(getFilePrettyTimes(), contains("10 minutes ago", "5 minutes ago", "moments ago"));
     }
 
+    @Test
+    public void shouldListPage() throws Exception {
+        // given
+        createFile("A.log", "x", now);
+        createFile("B.log", "x", now);
+        createFile("C.log", "x", now);
+        createFile("D.log", "x", now);
+
+        // when
+        model = logViewEndpoint.listModel(SortBy.FILENAME, true, null, 1, 2);
+
+        // then
+        assertThat(getFileNames(), contains("C.log", "B.log"));
+        assertThat(model.get("hasMore"), is(true));
+    }
+
+    @Test
+    public void shouldListLastPage() throws Exception {
+        // given
+        createFile("A.log", "x", now);
+        createFile("B.log", "x", now);
+        createFile("C.log", "x", now);
+
+        // when
+        model = logViewEndpoint.listModel(SortBy.FILENAME, false, null, 2, 2);
+
+        // then
+        assertThat(getFileNames(), contains("C.log"));
+        assertThat(model.get("hasMore"), is(false));
+    }
+
+    @Test
+    public void shouldRenderListIntoResponse() throws Exception {
+        // given
+        createFile("A.log", "x", now);
+        createFile("B.log", "x", now);
+        createFile("C.log", "x", now);
+        StringWriter html = mockResponseWriter();
+
+        // when
+        logViewEndpoint.list(SortBy.FILENAME, false, null, 1, 1, request, response);
+
+        // then
+        verify(response).setContentType("text/html;charset=UTF-8");
+        assertThat(html.toString(), containsString(">B.log</a>"));
+        assertThat(html.toString(), not(containsString(">A.log</a>")));
+        assertThat(html.toString(), containsString("offset=2&limit=1\">Next"));
+        assertThat(html.toString(), containsString("offset=0&limit=1\">Previous"));
+    }
+
+    @Test
+    public void shouldListAsJson() throws Exception {
+        // given
+        createFile("B.log", "xx", now);
+        createFile("A.log", "x", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.listJson(SortBy.FILENAME, false, null, 0, 1, null, request, response);
+
+        // then
+        verify(response).setContentType("application/json");
+        JsonNode listing = new ObjectMapper().readTree(outputStream.toByteArray());
+        assertThat(listing.get("hasMore").asBoolean(), is(true));
+        assertThat(listing.get("files").size(), is(1));
+        assertThat(listing.get("files").get(0).get("filename").asText(), is("A.log"));
+        assertThat(listing.get("files").get(0).get("fileType").asText(), is("FILE"));
+        assertThat(listing.get("files").get(0).get("size").asLong(), is(1L));
+    }
+
     @Test
     public void shouldSetFileTypeForFile() throws Exception {
         // given
         createFile("A.log", "x", now);
 
         // when
-        logViewEndpoint.list(model, SortBy.FILENAME, false, null);
+        model = logViewEndpoint.listModel(SortBy.FILENAME, false, null, 0, 1000);
 
         // then
         assertThat(getFileEntries().get(0).getFileType(), is(FileType.FILE));
@@ -145,7 +247,7 @@ public class LogViewEndpointTest {
         createFile("A.log.tar.gz", "x", now);
 
         // when
-        logViewEndpoint.list(model, SortBy.FILENAME, false, null);
+        model = logViewEndpoint.listModel(SortBy.FILENAME, false, null, 0, 1000);
 
         // then
         assertThat(getFileEntries().get(0).getFileType(), is(FileType.ARCHIVE));
@@ -154,10 +256,10 @@ public class LogViewEndpointTest {
     @Test
     public void shouldContainEmptyParentLinkInBaseFolder() throws Exception {
         // when
-        logViewEndpoint.list(model, SortBy.FILENAME, false, null);
+        model = logViewEndpoint.listModel(SortBy.FILENAME, false, null, 0, 1000);
 
         // then
-        assertThat(model.asMap().get("parent"), is(""));
+        assertThat(model.get("parent"), is(""));
     }
 
     @Test
@@ -166,10 +268,10 @@ public class LogViewEndpointTest {
         temporaryFolder.newFolder("subfolder");
 
         // when
-        logViewEndpoint.list(model, SortBy.FILENAME, false, "subfolder");
+        model = logViewEndpoint.listModel(SortBy.FILENAME, false, "subfolder", 0, 1000);
 
         // then
-        assertThat(model.asMap().get("parent"), is(""));
+        assertThat(model.get("parent"), is(""));
     }
 
     @Test
@@ -179,10 +281,10 @@ public class LogViewEndpointTest {
         temporaryFolder.newFolder("subfolder", "nested");
 
         // when
-        logViewEndpoint.list(model, SortBy.FILENAME, false, "subfolder/nested");
+        model = logViewEndpoint.listModel(SortBy.FILENAME, false, "subfolder/nested", 0, 1000);
 
         // then
-        assertThat(model.asMap().get("parent"), is("/subfolder"));
+        assertThat(model.get("parent"), is("/subfolder"));
     }
 
     @Test
@@ -191,7 +293,7 @@ public class LogViewEndpointTest {
         temporaryFolder.newFolder("subfolder");
 
         // when
-        logViewEndpoint.list(model, SortBy.FILENAME, false, null);
+        model = logViewEndpoint.listModel(SortBy.FILENAME, false, null, 0, 1000);
 
         // then
         List<FileEntry> fileEntries = getFileEntries();
@@ -207,7 +309,7 @@ public class LogViewEndpointTest {
         createZipArchive("file.zip", "A.log", "content");
 
         // when
-        logViewEndpoint.list(model, SortBy.FILENAME, false, "file.zip");
+        model = logViewEndpoint.listModel(SortBy.FILENAME, false, "file.zip", 0, 1000);
 
         // then
         List<FileEntry> fileEntries = getFileEntries();
@@ -223,7 +325,7 @@ public class LogViewEndpointTest {
         ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
 
         // when
-        logViewEndpoint.view("A.log", "file.zip", null, response);
+        logViewEndpoint.view("A.log", "file.zip", null, null, null, null, null, 500, null, null, request, response);
 
         // then
         assertThat(new String(outputStream.toByteArray()), is("content"));
@@ -243,7 +345,7 @@ public class LogViewEndpointTest {
         createZipArchive("file.zip", "A.log", "content");
 
         // when
-        logViewEndpoint.view("A.log", "file.zip", 1, response);
+        logViewEndpoint.view("A.log", "file.zip", 1, null, null, null, null, 500, null, null, request, response);
 
         // then -> exception
     }
@@ -254,7 +356,7 @@ public class LogViewEndpointTest {
         createTarGzArchive("file.tar.gz", "A.log", "content");
 
         // when
-        logViewEndpoint.list(model, SortBy.FILENAME, false, "file.tar.gz");
+        model = logViewEndpoint.listModel(SortBy.FILENAME, false, "file.tar.gz", 0, 1000);
 
         // then
         List<FileEntry> fileEntries = getFileEntries();
@@ -270,7 +372,7 @@ public class LogViewEndpointTest {
         ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
 
         // when
-        logViewEndpoint.view("A.log", "file.tar.gz", null, response);
+        logViewEndpoint.view("A.log", "file.tar.gz", null, null, null, null, null, 500, null, null, request, response);
 
         // then
         assertThat(new String(outputStream.toByteArray()), is("content"));
@@ -282,11 +384,186 @@ public class LogViewEndpointTest {
         createTarGzArchive("file.tar.gz", "A.log", "content");
 
         // when
-        logViewEndpoint.view("A.log", "file.tar.gz", 1, response);
+        logViewEndpoint.view("A.log", "file.tar.gz", 1, null, null, null, null, 500, null, null, request, response);
 
         // then -> exception
     }
 
+    @Test
+    public void shouldListCompressedFileAsSingleEntry() throws Exception {
+        // given
+        createGzFile("app.2015-01-20.log.gz", "content");
+
+        // when
+        model = logViewEndpoint.listModel(SortBy.FILENAME, false, "app.2015-01-20.log.gz", 0, 1000);
+
+        // then
+        assertThat(getFileNames(), contains("app.2015-01-20.log"));
+    }
+
+    @Test
+    public void shouldViewConcatenatedGzFile() throws Exception {
+        // given
+        createGzFile("app.log.gz", "line1\n", "line2\n");
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("app.log", "app.log.gz", null, null, null, null, null, 500, null, null, request, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("line1\nline2\n"));
+    }
+
+    @Test
+    public void shouldTailLinesOfGzFile() throws Exception {
+        // given
+        createGzFile("app.log.gz", "line1\nline2\nline3\n");
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("app.log", "app.log.gz", 2, null, null, null, null, 500, null, null, request, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("line2\nline3\n"));
+    }
+
+    @Test
+    public void shouldRejectTooManyTailLinesOfGzFile() throws Exception {
+        // given
+        createGzFile("app.log.gz", "line1\n");
+        mockResponseOutputStream();
+        expectedException.expect(IllegalArgumentException.class);
+
+        // when
+        logViewEndpoint.view("app.log", "app.log.gz", CompressedFileProvider.MAX_TAIL_LINES + 1, null, null, null, null,
+                500, null, null, request, response);
+    }
+
+    @Test
+    public void shouldCutOffOverlongLinesWhenTailingGzFile() throws Exception {
+        // given
+        String overlong = new String(new char[CompressedFileProvider.MAX_LINE_BYTES * 3]).replace('\0', 'x');
+        createGzFile("app.log.gz", "line1\n" + overlong + "\nline3");
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("app.log", "app.log.gz", 2, null, null, null, null, 500, null, null, request, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()),
+                is(overlong.substring(0, CompressedFileProvider.MAX_LINE_BYTES) + "\nline3"));
+    }
+
+    @Test
+    public void shouldTailBytesOfGzFile() throws Exception {
+        // given
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            content.append("line").append(i).append('\n');
+        }
+        createGzFile("app.log.gz", content.toString());
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("app.log", "app.log.gz", null, 10L, null, null, null, 500, null, null, request, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("line19999\n"));
+    }
+
+    @Test
+    public void shouldSearchInCompressedFiles() throws Exception {
+        // given
+        createGzFile("app.log.gz", "A-line1\nA-line2\n");
+        try (OutputStream outputStream = new BZip2CompressorOutputStream(new FileOutputStream(
+                new File(temporaryFolder.getRoot(), "app.log.bz2")))) {
+            IOUtils.write("B-line1\nB-line2\n", outputStream);
+        }
+        new File(temporaryFolder.getRoot(), "app.log.gz").setLastModified(now - 1000);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.search("line2", new SearchOptions(), null, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("[app.log.gz/app.log] A-line2\n"
+                + "[app.log.bz2/app.log] B-line2\n"));
+    }
+
+    @Test
+    public void shouldCompressViewWhenAccepted() throws Exception {
+        // given
+        createFile("file.log", "line1\nline2\n", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("file.log", null, null, null, null, null, null, 500, null, "deflate, gzip", request, response);
+
+        // then
+        verify(response).setHeader("Content-Encoding", "gzip");
+        verify(response).addHeader("Vary", "Accept-Encoding");
+        assertThat(IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(outputStream.toByteArray()))),
+                is("line1\nline2\n"));
+    }
+
+    @Test
+    public void shouldNotCompressRange() throws Exception {
+        // given
+        createFile("file.log", "line1\nline2\n", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("file.log", null, null, null, null, null, null, 500, "bytes=6-", "gzip", request, response);
+
+        // then
+        verify(response, times(0)).setHeader(eq("Content-Encoding"), anyString());
+        assertThat(new String(outputStream.toByteArray()), is("line2\n"));
+        ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), etag.capture());
+        assertThat(etag.getValue(), not(containsString("gzip")));
+    }
+
+    @Test
+    public void shouldPassGzFileThroughWhenGzipAccepted() throws Exception {
+        // given
+        createGzFile("app.log.gz", "line1\n");
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("app.log", "app.log.gz", null, null, null, null, null, 500, null, "gzip", request, response);
+
+        // then
+        byte[] gzFile = Files.readAllBytes(new File(temporaryFolder.getRoot(), "app.log.gz").toPath());
+        assertThat(outputStream.toByteArray(), is(gzFile));
+        verify(response).setHeader("Content-Encoding", "gzip");
+        verify(response).setHeader("Content-Length", String.valueOf(gzFile.length));
+    }
+
+    @Test
+    public void shouldCompressSearchResultsWithDeflate() throws Exception {
+        // given
+        createFile("file.log", "line1\nline2\n", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.search("line2", new SearchOptions(), "deflate", response);
+
+        // then
+        verify(response).setHeader("Content-Encoding", "deflate");
+        assertThat(IOUtils.toString(new InflaterInputStream(new ByteArrayInputStream(outputStream.toByteArray()))),
+                is("[file.log] line2\n"));
+    }
+
+    private void createGzFile(String fileName, String... members) throws Exception {
+        try (OutputStream outputStream = new FileOutputStream(new File(temporaryFolder.getRoot(), fileName))) {
+            for (String member : members) {
+                GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
+                IOUtils.write(member, gzipOutputStream);
+                gzipOutputStream.finish();
+            }
+        }
+    }
+
     private void createTarGzArchive(String archiveFileName, String contentFileName, String content) throws Exception {
 
         try(TarArchiveOutputStream tos = new TarArchiveOutputStream(new GZIPOutputStream(
@@ -333,7 +610,7 @@ public class LogViewEndpointTest {
         expectedException.expectMessage(containsString("may not be located outside base path"));
 
         // when
-        logViewEndpoint.view("../somefile", null, null, null);
+        logViewEndpoint.view("../somefile", null, null, null, null, null, null, 500, null, null, request, null);
     }
 
     @Test
@@ -343,7 +620,7 @@ public class LogViewEndpointTest {
         expectedException.expectMessage(containsString("may not be located outside base path"));
 
         // when
-        logViewEndpoint.view("somefile", "../otherdir", null, null);
+        logViewEndpoint.view("somefile", "../otherdir", null, null, null, null, null, 500, null, null, request, null);
     }
 
     @Test
@@ -353,7 +630,7 @@ public class LogViewEndpointTest {
         ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
 
         // when
-        logViewEndpoint.view("file.log", null, null, response);
+        logViewEndpoint.view("file.log", null, null, null, null, null, null, 500, null, null, request, response);
 
         // then
         assertThat(new String(outputStream.toByteArray()), is("abc"));
@@ -366,7 +643,7 @@ public class LogViewEndpointTest {
         ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
 
         // when
-        logViewEndpoint.view("file.log", null, 1, response);
+        logViewEndpoint.view("file.log", null, 1, null, null, null, null, 500, null, null, request, response);
 
         // then
         assertThat(new String(outputStream.toByteArray()), not(containsString("line1")));
@@ -374,28 +651,877 @@ public class LogViewEndpointTest {
     }
 
     @Test
-    public void shouldSearchInFiles() throws Exception {
+    public void shouldTailLinesWithOriginalLineEndings() throws Exception {
         // given
-        String sep = System.lineSeparator();
-        createFile("A.log", "A-line1" + sep + "A-line2" + sep + "A-line3", now - 1);
-        createFile("B.log", "B-line1" + sep + "B-line2" + sep + "B-line3", now);
+        createFile("file.log", "line1\r\nline2\r\nline3\r\n", now);
         ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
 
         // when
-        logViewEndpoint.search("line2", response);
+        logViewEndpoint.view("file.log", null, 2, null, null, null, null, 500, null, null, request, response);
 
         // then
-        String output = new String(outputStream.toByteArray());
-        assertThat(output, containsString("[A.log] A-line2"));
-        assertThat(output, containsString("[B.log] B-line2"));
-        assertThat(output, not(containsString("line1")));
-        assertThat(output, not(containsString("line3")));
+        assertThat(new String(outputStream.toByteArray()), is("line2\r\nline3\r\n"));
     }
 
-    private ByteArrayServletOutputStream mockResponseOutputStream() throws Exception {
+    @Test
+    public void shouldTailLinesAsJson() throws Exception {
+        // given
+        createFile("file.log", "line1\r\nline2 \"quoted\"\r\nline3", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.viewJson("file.log", null, 2, null, null, null, null, 500, null, request, response);
+
+        // then
+        verify(response).setContentType("application/json");
+        assertThat(new String(outputStream.toByteArray()), is("[\"line2 \\\"quoted\\\"\",\"line3\"]"));
+    }
+
+    @Test
+    public void shouldTailLinesAcrossBlocks() throws Exception {
+        // given
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            content.append("line").append(i).append('\n');
+        }
+        createFile("file.log", content.toString(), now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("file.log", null, 15000, null, null, null, null, 500, null, null, request, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is(content.substring(content.indexOf("line5000\n"))));
+    }
+
+    @Test
+    public void shouldTailBytes() throws Exception {
+        // given
+        createFile("file.log", "line1\nline2\n", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("file.log", null, null, 8L, null, null, null, 500, null, null, request, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("1\nline2\n"));
+    }
+
+    @Test
+    public void shouldViewPageOfLines() throws Exception {
+        // given
+        createFile("file.log", "line1\nline2\nline3\nline4\n", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("file.log", null, null, null, null, null, 2L, 2, null, null, request, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("line2\nline3\n"));
+    }
+
+    @Test
+    public void shouldViewPageOfLinesAtEndOfFile() throws Exception {
+        // given
+        createFile("file.log", "line1\nline2", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("file.log", null, null, null, null, null, 2L, 500, null, null, request, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("line2"));
+    }
+
+    @Test
+    public void shouldAdvertiseRangesWhenViewingFile() throws Exception {
+        // given
+        createFile("file.log", "abc", now);
+        mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("file.log", null, null, null, null, null, null, 500, null, null, request, response);
+
+        // then
+        verify(response).setHeader("Accept-Ranges", "bytes");
+        verify(response).setHeader("Content-Length", "3");
+    }
+
+    @Test
+    public void shouldViewSingleRange() throws Exception {
+        // given
+        createFile("file.log", "line1\nline2\n", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("file.log", null, null, null, null, null, null, 500, "bytes=6-", null, request, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("line2\n"));
+        verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(response).setHeader("Content-Range", "bytes 6-11/12");
+        verify(response).setHeader("Content-Length", "6");
+    }
+
+    @Test
+    public void shouldViewMultipleRanges() throws Exception {
+        // given
+        createFile("file.log", "line1\nline2\n", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("file.log", null, null, null, null, null, null, 500, "bytes=0-4,-6", null, request, response);
+
+        // then
+        ArgumentCaptor<String> contentType = ArgumentCaptor.forClass(String.class);
+        verify(response, times(2)).setContentType(contentType.capture());
+        String boundary = contentType.getValue().substring("multipart/byteranges; boundary=".length());
+        String body = new String(outputStream.toByteArray());
+        assertThat(body, is("\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 0-4/12\r\n\r\n"
+                + "line1"
+                + "\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 6-11/12\r\n\r\n"
+                + "line2\n"
+                + "\r\n--" + boundary + "--\r\n"));
+        verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(response).setHeader("Content-Length", String.valueOf(body.length()));
+    }
+
+    @Test
+    public void shouldViewRangeIfUnchanged() throws Exception {
+        // given
+        createFile("file.log", "line1\nline2\n", now);
+        mockResponseOutputStream();
+        logViewEndpoint.view("file.log", null, null, null, null, null, null, 500, null, null, request, response);
+        ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), etag.capture());
+        HttpServletResponse secondResponse = mock(HttpServletResponse.class);
         ByteArrayServletOutputStream outputStream = new ByteArrayServletOutputStream();
-        when(response.getOutputStream()).thenReturn(outputStream);
-        return outputStream;
+        when(secondResponse.getOutputStream()).thenReturn(outputStream);
+        when(request.getHeader("If-Range")).thenReturn(etag.getValue());
+
+        // when
+        logViewEndpoint.view("file.log", null, null, null, null, null, null, 500, "bytes=6-", null, request,
+                secondResponse);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("line2\n"));
+        verify(secondResponse).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    }
+
+    @Test
+    public void shouldViewWholeFileIfRangeIsOfOtherVersion() throws Exception {
+        // given
+        createFile("file.log", "line1\nline2\n", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+        when(request.getHeader("If-Range")).thenReturn("\"other\"");
+
+        // when
+        logViewEndpoint.view("file.log", null, null, null, null, null, null, 500, "bytes=6-", null, request, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("line1\nline2\n"));
+        verify(response, times(0)).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(response).setHeader("Content-Length", "12");
+    }
+
+    @Test
+    public void shouldViewWholeFileIfRangeIsOfOtherModificationTime() throws Exception {
+        // given
+        createFile("file.log", "line1\nline2\n", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+        when(request.getHeader("If-Range")).thenReturn("Tue, 20 Jan 2015 10:00:00 GMT");
+        when(request.getDateHeader("If-Range")).thenReturn(now - 60 * 1000);
+
+        // when
+        logViewEndpoint.view("file.log", null, null, null, null, null, null, 500, "bytes=6-", null, request, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("line1\nline2\n"));
+        verify(response, times(0)).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    }
+
+    @Test
+    public void shouldRejectUnsatisfiableRange() throws Exception {
+        // given
+        createFile("file.log", "abc", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("file.log", null, null, null, null, null, null, 500, "bytes=3-", null, request, response);
+
+        // then
+        assertThat(outputStream.toByteArray().length, is(0));
+        verify(response).setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        verify(response).setHeader("Content-Range", "bytes */3");
+    }
+
+    @Test
+    public void shouldIgnoreInvalidRange() throws Exception {
+        // given
+        createFile("file.log", "abc", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("file.log", null, null, null, null, null, null, 500, "bytes=2-1", null, request, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("abc"));
+    }
+
+    @Test
+    public void shouldViewRangeOfStoredZipEntry() throws Exception {
+        // given
+        byte[] content = "line1\nline2\n".getBytes();
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(new File(temporaryFolder.getRoot(), "file.zip")))) {
+            ZipEntry zipEntry = new ZipEntry("A.log");
+            zipEntry.setMethod(ZipEntry.STORED);
+            zipEntry.setSize(content.length);
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            zipEntry.setCrc(crc.getValue());
+            zos.putNextEntry(zipEntry);
+            zos.write(content);
+        }
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("A.log", "file.zip", null, null, null, null, null, 500, "bytes=6-10", null, request, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("line2"));
+        verify(response).setHeader("Content-Range", "bytes 6-10/12");
+    }
+
+    @Test
+    public void shouldViewCompressedZipEntryCompletelyWhenRangeRequested() throws Exception {
+        // given
+        createZipArchive("file.zip", "A.log", "content");
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("A.log", "file.zip", null, null, null, null, null, 500, "bytes=2-", null, request, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("content"));
+        verify(response, times(0)).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    }
+
+    @Test
+    public void shouldLeaveSendingFileToContainer() throws Exception {
+        // given
+        createFile("file.log", new String(new char[100000]).replace('\0', 'x'), now);
+        when(request.getAttribute("org.apache.tomcat.sendfile.support")).thenReturn(Boolean.TRUE);
+
+        // when
+        logViewEndpoint.view("file.log", null, null, null, null, null, null, 500, null, null, request, response);
+
+        // then
+        verify(request).setAttribute("org.apache.tomcat.sendfile.filename",
+                new File(temporaryFolder.getRoot(), "file.log").getAbsolutePath());
+        verify(request).setAttribute("org.apache.tomcat.sendfile.start", 0L);
+        verify(request).setAttribute("org.apache.tomcat.sendfile.end", 100000L);
+        verify(response).setHeader("Content-Length", "100000");
+        verify(response, times(0)).getOutputStream();
+    }
+
+    @Test
+    public void shouldLeaveSendingRangeToContainer() throws Exception {
+        // given
+        createFile("file.log", new String(new char[100000]).replace('\0', 'x'), now);
+        when(request.getAttribute("org.apache.tomcat.sendfile.support")).thenReturn(Boolean.TRUE);
+
+        // when
+        logViewEndpoint.view("file.log", null, null, null, null, null, null, 500, "bytes=1000-", null, request,
+                response);
+
+        // then
+        verify(request).setAttribute("org.apache.tomcat.sendfile.start", 1000L);
+        verify(request).setAttribute("org.apache.tomcat.sendfile.end", 100000L);
+        verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(response, times(0)).getOutputStream();
+    }
+
+    @Test
+    public void shouldWriteSmallFileDirectly() throws Exception {
+        // given
+        createFile("file.log", "content", now);
+        when(request.getAttribute("org.apache.tomcat.sendfile.support")).thenReturn(Boolean.TRUE);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("file.log", null, null, null, null, null, null, 500, null, null, request, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("content"));
+        verify(request, times(0)).setAttribute(eq("org.apache.tomcat.sendfile.filename"), anyString());
+    }
+
+    @Test
+    public void shouldSendValidators() throws Exception {
+        // given
+        createFile("file.log", "content", now);
+        mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("file.log", null, null, null, null, null, null, 500, null, null, request, response);
+
+        // then
+        verify(response).setHeader(eq("ETag"), anyString());
+        verify(response).setDateHeader("Last-Modified", now);
+        verify(response).setHeader("Cache-Control", "private, no-cache");
+    }
+
+    @Test
+    public void shouldNotSendUnmodifiedContent() throws Exception {
+        // given
+        createFile("file.log", "content", now);
+        mockResponseOutputStream();
+        logViewEndpoint.view("file.log", null, null, null, null, null, null, 500, null, null, request, response);
+        ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), etag.capture());
+        HttpServletResponse secondResponse = mock(HttpServletResponse.class);
+        when(request.getHeader("If-None-Match")).thenReturn("\"other\", " + etag.getValue());
+
+        // when
+        logViewEndpoint.view("file.log", null, null, null, null, null, null, 500, null, null, request, secondResponse);
+
+        // then
+        verify(secondResponse).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(secondResponse, times(0)).getOutputStream();
+    }
+
+    @Test
+    public void shouldSendModifiedContent() throws Exception {
+        // given
+        createFile("file.log", "content", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+        when(request.getHeader("If-None-Match")).thenReturn("\"other\"");
+
+        // when
+        logViewEndpoint.view("file.log", null, null, null, null, null, null, 500, null, null, request, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("content"));
+        verify(response, times(0)).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    }
+
+    @Test
+    public void shouldNotSendContentUnmodifiedSince() throws Exception {
+        // given
+        createFile("file.log", "content", now - 60 * 1000);
+        when(request.getDateHeader("If-Modified-Since")).thenReturn(now);
+
+        // when
+        logViewEndpoint.view("file.log", null, 10, null, null, null, null, 500, null, null, request, response);
+
+        // then
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(response, times(0)).getOutputStream();
+    }
+
+    @Test
+    public void shouldLetClientsKeepRotatedFiles() throws Exception {
+        // given
+        createGzFile("app.2015-01-20.log.gz", "content");
+        assertThat(new File(temporaryFolder.getRoot(), "app.2015-01-20.log.gz").setLastModified(now - 2 * DAY), is(true));
+        mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("app.2015-01-20.log", "app.2015-01-20.log.gz", null, null, null, null, null, 500, null,
+                null, request, response);
+
+        // then
+        verify(response).setHeader("Cache-Control", "private, max-age=" + LogViewEndpoint.DEFAULT_ROTATED_MAX_AGE);
+    }
+
+    @Test
+    public void shouldNotSendUnmodifiedListing() throws Exception {
+        // given
+        createFile("file.log", "content", now);
+        mockResponseOutputStream();
+        logViewEndpoint.listJson(SortBy.FILENAME, false, null, 0, 1000, null, request, response);
+        ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), etag.capture());
+        HttpServletResponse secondResponse = mock(HttpServletResponse.class);
+        when(request.getHeader("If-None-Match")).thenReturn(etag.getValue());
+
+        // when
+        logViewEndpoint.listJson(SortBy.FILENAME, false, null, 0, 1000, null, request, secondResponse);
+
+        // then
+        verify(secondResponse).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(secondResponse, times(0)).getOutputStream();
+    }
+
+    @Test
+    public void shouldSendChangedListing() throws Exception {
+        // given
+        createZipArchive("file.zip", "A.log", "content");
+        mockResponseOutputStream();
+        logViewEndpoint.listJson(SortBy.FILENAME, false, "file.zip", 0, 1000, null, request, response);
+        ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), etag.capture());
+        HttpServletResponse secondResponse = mock(HttpServletResponse.class);
+        when(secondResponse.getOutputStream()).thenReturn(new ByteArrayServletOutputStream());
+        when(request.getHeader("If-None-Match")).thenReturn(etag.getValue());
+
+        // when
+        createZipArchive("file.zip", "B.log", "content");
+        assertThat(new File(temporaryFolder.getRoot(), "file.zip").setLastModified(now + 10000), is(true));
+        logViewEndpoint.listJson(SortBy.FILENAME, false, "file.zip", 0, 1000, null, request, secondResponse);
+
+        // then
+        verify(secondResponse, times(0)).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    }
+
+    @Test
+    public void shouldSearchInFiles() throws Exception {
+        // given
+        String sep = System.lineSeparator();
+        createFile("A.log", "A-line1" + sep + "A-line2" + sep + "A-line3", now - 1);
+        createFile("B.log", "B-line1" + sep + "B-line2" + sep + "B-line3", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.search("line2", new SearchOptions(), null, response);
+
+        // then
+        String output = new String(outputStream.toByteArray());
+        assertThat(output, containsString("[A.log] A-line2"));
+        assertThat(output, containsString("[B.log] B-line2"));
+        assertThat(output, not(containsString("line1")));
+        assertThat(output, not(containsString("line3")));
+    }
+
+    @Test
+    public void shouldSearchAsNdjson() throws Exception {
+        // given
+        createFile("A.log", "A-line1\nA-line2\n", now - 1);
+        createFile("B.log", "B-line1\nB-line2\n", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.searchJson("line2", new SearchOptions(), null, response);
+
+        // then
+        verify(response).setContentType("application/x-ndjson");
+        assertThat(new String(outputStream.toByteArray()),
+                is("{\"file\":\"A.log\",\"offset\":8,\"match\":true,\"line\":\"A-line2\"}\n"
+                        + "{\"file\":\"B.log\",\"offset\":8,\"match\":true,\"line\":\"B-line2\"}\n"));
+    }
+
+    @Test
+    public void shouldSearchFilesInModificationOrder() throws Exception {
+        // given
+        String sep = System.lineSeparator();
+        for (int i = 0; i < 20; i++) {
+            createFile("file" + i + ".log", "match" + i + sep, now - i * 1000);
+        }
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.search("match", new SearchOptions(), null, response);
+
+        // then
+        StringBuilder expected = new StringBuilder();
+        for (int i = 19; i >= 0; i--) {
+            expected.append("[file").append(i).append(".log] match").append(i).append(sep);
+        }
+        assertThat(new String(outputStream.toByteArray()), is(expected.toString()));
+    }
+
+    @Test
+    public void shouldSearchInArchives() throws Exception {
+        // given
+        String sep = System.lineSeparator();
+        createZipArchive("logs.zip", "A.log", "A-line1" + sep + "A-line2" + sep);
+        createTarGzArchive("logs.tar.gz", "B.log", "B-line1" + sep + "B-line2" + sep);
+        new File(temporaryFolder.getRoot(), "logs.zip").setLastModified(now - 2000);
+        new File(temporaryFolder.getRoot(), "logs.tar.gz").setLastModified(now - 1000);
+        createFile("C.log", "C-line2" + sep, now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.search("line2", new SearchOptions(), null, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("[logs.zip/A.log] A-line2" + sep
+                + "[logs.tar.gz/B.log] B-line2" + sep
+                + "[C.log] C-line2" + sep));
+    }
+
+    @Test
+    public void shouldSearchWithRegex() throws Exception {
+        // given
+        String sep = System.lineSeparator();
+        createFile("A.log", "A-line1" + sep + "A-line2" + sep + "A-line3", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        SearchOptions options = new SearchOptions();
+        options.setRegex(true);
+        logViewEndpoint.search("line[13]", options, null, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("[A.log] A-line1" + sep + "[A.log] A-line3" + sep));
+    }
+
+    @Test
+    public void shouldSearchInFileLargerThanSearchBuffer() throws Exception {
+        // given
+        String sep = System.lineSeparator();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            content.append("line").append(i).append(sep);
+        }
+        createFile("A.log", content.toString(), now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.search("line9999", new SearchOptions(), null, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("[A.log] line9999" + sep));
+    }
+
+    @Test
+    public void shouldSearchUsingIndex() throws Exception {
+        // given
+        LogViewEndpointAutoconfig.EndpointConfiguration configuration = new LogViewEndpointAutoconfig.EndpointConfiguration();
+        configuration.setSearchIndexEnabled(true);
+        configuration.setSearchIndexPath(indexFolder.getRoot().getAbsolutePath());
+        logViewEndpoint = new LogViewEndpoint(temporaryFolder.getRoot().getAbsolutePath(), configuration);
+        String sep = System.lineSeparator();
+        createFile("A.log", "A-line1" + sep + "A-line2" + sep, now - 1);
+        createFile("B.log", "B-line1" + sep + "B-line2" + sep + "B-li", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.search("line2", new SearchOptions(), null, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("[A.log] A-line2" + sep + "[B.log] B-line2" + sep));
+        assertThat(indexFolder.getRoot().list().length, is(2));
+        assertThat(logViewEndpoint.stats().containsKey("searchIndex"), is(true));
+    }
+
+    @Test
+    public void shouldViewTailAndSearchMappedFile() throws Exception {
+        // given
+        LogViewEndpointAutoconfig.EndpointConfiguration configuration = new LogViewEndpointAutoconfig.EndpointConfiguration();
+        configuration.setMmapThreshold(1);
+        logViewEndpoint = new LogViewEndpoint(temporaryFolder.getRoot().getAbsolutePath(), configuration);
+        createFile("file.log", "line1\nline2\nline3\n", now);
+
+        // when
+        ByteArrayServletOutputStream viewOutput = mockResponseOutputStream();
+        logViewEndpoint.view("file.log", null, null, null, null, null, null, 500, null, null, request, response);
+        ByteArrayServletOutputStream tailOutput = mockResponseOutputStream();
+        logViewEndpoint.view("file.log", null, 2, null, null, null, null, 500, null, null, request, response);
+        ByteArrayServletOutputStream searchOutput = mockResponseOutputStream();
+        logViewEndpoint.search("line2", new SearchOptions(), null, response);
+
+        // then
+        assertThat(new String(viewOutput.toByteArray()), is("line1\nline2\nline3\n"));
+        assertThat(new String(tailOutput.toByteArray()), is("line2\nline3\n"));
+        assertThat(new String(searchOutput.toByteArray()), is("[file.log] line2" + System.lineSeparator()));
+    }
+
+    @Test
+    public void shouldSearchPageByPage() throws Exception {
+        // given
+        String sep = System.lineSeparator();
+        createZipArchive("logs.zip", "A.log", "match1" + sep + "other" + sep + "match2" + sep);
+        new File(temporaryFolder.getRoot(), "logs.zip").setLastModified(now - 1000);
+        createFile("B.log", "match3" + sep + "match4" + sep, now);
+
+        // when
+        SearchOptions options = new SearchOptions();
+        options.setLimit(3);
+        ByteArrayServletOutputStream firstPage = mockResponseOutputStream();
+        logViewEndpoint.search("match", options, null, response);
+        ArgumentCaptor<String> cursor = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq(LogViewEndpoint.NEXT_CURSOR_HEADER), cursor.capture());
+        options.setCursor(cursor.getValue());
+        ByteArrayServletOutputStream secondPage = mockResponseOutputStream();
+        logViewEndpoint.search("match", options, null, response);
+
+        // then
+        assertThat(new String(firstPage.toByteArray()), is("[logs.zip/A.log] match1" + sep
+                + "[logs.zip/A.log] match2" + sep + "[B.log] match3" + sep));
+        assertThat(new String(secondPage.toByteArray()), is("[B.log] match4" + sep));
+        verify(response, times(1)).setHeader(eq(LogViewEndpoint.NEXT_CURSOR_HEADER), anyString());
+    }
+
+    @Test
+    public void shouldNotReadFilesAfterFullPage() throws Exception {
+        // given
+        String sep = System.lineSeparator();
+        createFile("A.log", "match1" + sep + "match2" + sep, now - 1000);
+        createFile("B.log", "match3" + sep, now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+        SearchOptions options = new SearchOptions();
+        options.setLimit(1);
+
+        // when
+        logViewEndpoint.search("match", options, null, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("[A.log] match1" + sep));
+        verify(response).setHeader(LogViewEndpoint.SCANNED_BYTES_HEADER, String.valueOf(("match1" + sep).length()));
+    }
+
+    @Test
+    public void shouldRejectTooManyContextLinesBeforeWriting() throws Exception {
+        // given
+        createFile("file.log", "match", now);
+        SearchOptions options = new SearchOptions();
+        options.setBefore(1000000000);
+        expectedException.expect(IllegalArgumentException.class);
+
+        // when
+        try {
+            logViewEndpoint.search("match", options, null, response);
+        } finally {
+            // then
+            verify(response, never()).getOutputStream();
+        }
+    }
+
+    @Test
+    public void shouldRejectLimitAboveMaximum() throws Exception {
+        // given
+        SearchOptions options = new SearchOptions();
+        options.setLimit(SearchPage.MAX_LIMIT + 1);
+        expectedException.expect(IllegalArgumentException.class);
+
+        // when
+        logViewEndpoint.search("match", options, null, response);
+    }
+
+    @Test
+    public void shouldAnswerGoneIfFileOfCursorWasRotatedAway() throws Exception {
+        // given
+        createFile("A.log", "match1" + System.lineSeparator(), now);
+        mockResponseOutputStream();
+        SearchOptions options = new SearchOptions();
+        options.setLimit(1);
+        options.setCursor(SearchPage.cursor("rotated.log", 7));
+
+        // when
+        logViewEndpoint.search("match", options, null, response);
+
+        // then
+        verify(response).sendError(eq(HttpServletResponse.SC_GONE), anyString());
+        verify(response, never()).getOutputStream();
+    }
+
+    @Test
+    public void shouldRejectCursorWithoutLimit() throws Exception {
+        // given
+        SearchOptions options = new SearchOptions();
+        options.setCursor("abc");
+        expectedException.expect(IllegalArgumentException.class);
+
+        // when
+        logViewEndpoint.search("match", options, null, response);
+    }
+
+    @Test
+    public void shouldViewTimeRange() throws Exception {
+        // given
+        createFile("file.log", "2015-01-20 14:01:59.000 line1\n"
+                + "2015-01-20 14:02:00.000 line2\n\tat stacktrace\n"
+                + "2015-01-20 14:05:00.000 line3\n", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.view("file.log", null, null, null, "2015-01-20 14:02", "2015-01-20 14:05", null, 500, null, null, request, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("2015-01-20 14:02:00.000 line2\n\tat stacktrace\n"));
+    }
+
+    @Test
+    public void shouldSearchTimeRange() throws Exception {
+        // given
+        createFile("A.log", "2015-01-20 14:01:00.000 match1\n2015-01-20 14:03:00.000 match2\n", now - 1000);
+        createFile("B.log", "2015-01-20 14:04:00.000 match3\n2015-01-20 14:06:00.000 match4\n", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+        SearchOptions options = new SearchOptions();
+        options.setFrom("2015-01-20 14:02");
+        options.setTo("2015-01-20 14:05");
+
+        // when
+        logViewEndpoint.search("match", options, null, response);
+
+        // then
+        String sep = System.lineSeparator();
+        assertThat(new String(outputStream.toByteArray()), is("[A.log] 2015-01-20 14:03:00.000 match2" + sep
+                + "[B.log] 2015-01-20 14:04:00.000 match3" + sep));
+    }
+
+    @Test
+    public void shouldSearchSubfoldersRecursively() throws Exception {
+        // given
+        String sep = System.lineSeparator();
+        createFile("A.log", "A-match" + sep, now - 3000);
+        assertThat(new File(temporaryFolder.getRoot(), "service/nested").mkdirs(), is(true));
+        createFile("service/B.log", "B-match" + sep, now - 2000);
+        createFile("service/nested/C.log", "C-match" + sep, now - 1000);
+        createFile("service/nested/C.txt", "C-match" + sep, now);
+        assertThat(new File(temporaryFolder.getRoot(), "service").setLastModified(now - 2500), is(true));
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+
+        // when
+        logViewEndpoint.search("match", new SearchOptions(), null, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("[A.log] A-match" + sep
+                + "[service/B.log] B-match" + sep
+                + "[service/nested/C.log] C-match" + sep
+                + "[service/nested/C.txt] C-match" + sep));
+    }
+
+    @Test
+    public void shouldSearchFromBaseWithDepthAndGlob() throws Exception {
+        // given
+        String sep = System.lineSeparator();
+        assertThat(new File(temporaryFolder.getRoot(), "service/nested").mkdirs(), is(true));
+        createFile("A.log", "A-match" + sep, now);
+        createFile("service/B.log", "B-match" + sep, now);
+        createFile("service/B.txt", "B-match" + sep, now);
+        createFile("service/nested/C.log", "C-match" + sep, now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+        SearchOptions options = new SearchOptions();
+        options.setBase("service");
+        options.setDepth(0);
+        options.setGlob("*.log");
+
+        // when
+        logViewEndpoint.search("match", options, null, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("[B.log] B-match" + sep));
+    }
+
+    @Test
+    public void shouldSearchWithContextLines() throws Exception {
+        // given
+        String sep = System.lineSeparator();
+        createFile("A.log", "start\nERROR failed\n\tat Foo.bar\n\tat Foo.baz\nend\n", now);
+        ByteArrayServletOutputStream outputStream = mockResponseOutputStream();
+        SearchOptions options = new SearchOptions();
+        options.setContext(1);
+        options.setAfter(2);
+
+        // when
+        logViewEndpoint.search("ERROR", options, null, response);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("[A.log] start" + sep + "[A.log] ERROR failed" + sep
+                + "[A.log] \tat Foo.bar" + sep + "[A.log] \tat Foo.baz" + sep));
+    }
+
+    @Test
+    public void shouldFollowFileAsEventStream() throws Exception {
+        // given
+        createFile("file.log", "line1\nline2\nline3\n", now);
+        ByteArrayServletOutputStream outputStream = mockEventStream();
+
+        // when
+        logViewEndpoint.follow("file.log", null, 2, request, response);
+
+        // then
+        verify(response).setContentType(LogViewEndpoint.EVENT_STREAM_VALUE);
+        assertThat(nextEvents(outputStream), is("id: 18\ndata: line2\ndata: line3\n\n"));
+    }
+
+    @Test
+    public void shouldEndFollowingWhenClosed() throws Exception {
+        // given
+        createFile("file.log", "line1\n", now);
+        ByteArrayServletOutputStream outputStream = mockEventStream();
+        AsyncContext asyncContext = request.startAsync();
+        logViewEndpoint.follow("file.log", null, 1, request, response);
+        assertThat(nextEvents(outputStream), is("id: 6\ndata: line1\n\n"));
+
+        // when
+        logViewEndpoint.close();
+
+        // then
+        verify(asyncContext, timeout(5000)).complete();
+    }
+
+    @Test
+    public void shouldIgnoreInvalidLastEventId() throws Exception {
+        // given
+        createFile("file.log", "line1\nline2\n", now);
+        ByteArrayServletOutputStream outputStream = mockEventStream();
+        when(request.getHeader("Last-Event-ID")).thenReturn("-5");
+
+        // when
+        logViewEndpoint.follow("file.log", null, 1, request, response);
+
+        // then
+        assertThat(nextEvents(outputStream), is("id: 12\ndata: line2\n\n"));
+    }
+
+    @Test
+    public void shouldResumeFollowingAtLastEventId() throws Exception {
+        // given
+        createFile("file.log", "line1\nline2\n", now);
+        ByteArrayServletOutputStream outputStream = mockEventStream();
+        when(request.getHeader("Last-Event-ID")).thenReturn("0");
+
+        // when
+        logViewEndpoint.follow("file.log", null, 1, request, response);
+
+        // then
+        assertThat(nextEvents(outputStream), is("id: 12\ndata: line1\ndata: line2\n\n"));
+    }
+
+    private ByteArrayServletOutputStream mockEventStream() throws Exception {
+        ByteArrayServletOutputStream outputStream = new ByteArrayServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+        };
+        when(response.getOutputStream()).thenReturn(outputStream);
+        when(request.startAsync()).thenReturn(mock(AsyncContext.class));
+        return outputStream;
+    }
+
+    private static String nextEvents(ByteArrayServletOutputStream outputStream) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 5000;
+        while (outputStream.toByteArray().length == 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        return new String(outputStream.toByteArray());
+    }
+
+    @Test
+    public void shouldNotSearchOutsideLoggingPath() throws Exception {
+        // given
+        SearchOptions options = new SearchOptions();
+        options.setBase("..");
+        expectedException.expect(IllegalArgumentException.class);
+
+        // when
+        logViewEndpoint.search("match", options, null, response);
+    }
+
+    private ByteArrayServletOutputStream mockResponseOutputStream() throws Exception {
+        ByteArrayServletOutputStream outputStream = new ByteArrayServletOutputStream();
+        when(response.getOutputStream()).thenReturn(outputStream);
+        return outputStream;
+    }
+
+    private StringWriter mockResponseWriter() throws Exception {
+        StringWriter writer = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(writer));
+        return writer;
     }
 
     private List<String> getFileNames() {
@@ -420,7 +1546,7 @@ public class LogViewEndpointTest {
     }
 
     private List<FileEntry> getFileEntries() {
-        return (List<FileEntry>) model.asMap().get("files");
+        return (List<FileEntry>) model.get("files");
     }
 
     private void createFile(String filename, String content, long modified) throws Exception {
@@ -0,0 +1,95 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class MappedFileReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldFindTailOffset() throws Exception {
+        // given
+        Path file = createFile("a\nbb\nccc\n");
+
+        // then
+        try (MappedFileReader reader = new MappedFileReader(file)) {
+            assertThat(reader.tailOffset(1), is(5L));
+            assertThat(reader.tailOffset(2), is(2L));
+            assertThat(reader.tailOffset(3), is(0L));
+            assertThat(reader.tailOffset(10), is(0L));
+        }
+    }
+
+    @Test
+    public void shouldFindTailOffsetWithoutTrailingLineBreak() throws Exception {
+        // given
+        Path file = createFile("a\nbb\nccc");
+
+        // then
+        try (MappedFileReader reader = new MappedFileReader(file)) {
+            assertThat(reader.tailOffset(1), is(5L));
+        }
+    }
+
+    @Test
+    public void shouldFindTailOffsetAcrossBlocks() throws Exception {
+        // given
+        String line = new String(new char[MappedFileReader.TAIL_BLOCK_SIZE]).replace('\0', 'x') + "\n";
+        Path file = createFile(line + line + line);
+
+        // then
+        try (FileChannel channel = FileChannel.open(file)) {
+            assertThat(MappedFileReader.tailOffset(channel, 2), is((long) line.length()));
+            assertThat(MappedFileReader.tailOffset(channel, 0), is(3L * line.length()));
+        }
+    }
+
+    @Test
+    public void shouldTransferContentAppendedAfterOpening() throws Exception {
+        // given
+        Path file = createFile("first\n");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // when
+        try (MappedFileReader reader = new MappedFileReader(file)) {
+            Files.write(file, "second\n".getBytes(), StandardOpenOption.APPEND);
+            reader.transferTo(3, Long.MAX_VALUE, output);
+        }
+
+        // then
+        assertThat(new String(output.toByteArray()), is("st\nsecond\n"));
+    }
+
+    @Test
+    public void shouldSearchMappedRange() throws Exception {
+        // given
+        Path file = createFile("match1\nmatch2\nmatch3\n");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // when
+        try (MappedFileReader reader = new MappedFileReader(file)) {
+            new LineSearcher("match").search(reader, 7, 14, "f", output);
+        }
+
+        // then
+        assertThat(new String(output.toByteArray()), is("[f] match2" + System.lineSeparator()));
+    }
+
+    private Path createFile(String content) throws Exception {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, content.getBytes());
+        return file;
+    }
+}
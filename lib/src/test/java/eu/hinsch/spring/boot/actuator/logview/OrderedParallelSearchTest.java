@@ -0,0 +1,139 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class OrderedParallelSearchTest {
+
+    @Test
+    public void shouldWriteOutputInTaskOrder() throws Exception {
+        // given
+        OrderedParallelSearch search = new OrderedParallelSearch(4, 1024);
+        CountDownLatch secondDone = new CountDownLatch(1);
+        List<OrderedParallelSearch.Task> tasks = asList(
+                out -> {
+                    await(secondDone);
+                    out.write("first".getBytes());
+                },
+                out -> {
+                    out.write("second".getBytes());
+                    secondDone.countDown();
+                });
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // when
+        search.execute(tasks, outputStream);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("firstsecond"));
+    }
+
+    @Test
+    public void shouldNotBufferMoreThanLimit() throws Exception {
+        // given
+        int limit = 16 * 1024;
+        OrderedParallelSearch search = new OrderedParallelSearch(4, limit);
+        AtomicInteger maxBuffered = new AtomicInteger();
+        CountDownLatch othersStarted = new CountDownLatch(3);
+        List<OrderedParallelSearch.Task> tasks = new ArrayList<>();
+        tasks.add(out -> {
+            // hold back the head until the other tasks had a chance to fill the buffer
+            await(othersStarted);
+            pause(200);
+            maxBuffered.set(search.getBufferedBytes());
+        });
+        for (int i = 0; i < 3; i++) {
+            tasks.add(out -> {
+                othersStarted.countDown();
+                for (int j = 0; j < 100; j++) {
+                    out.write(new byte[1024]);
+                }
+            });
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // when
+        search.execute(tasks, outputStream);
+
+        // then
+        assertThat(outputStream.size(), is(300 * 1024));
+        assertThat(maxBuffered.get(), lessThanOrEqualTo(limit));
+        assertThat(search.getBufferedBytes(), is(0));
+    }
+
+    @Test
+    public void shouldWriteDeferredTasksInPlace() throws Exception {
+        // given
+        OrderedParallelSearch search = new OrderedParallelSearch(4, 1024);
+        List<OrderedParallelSearch.Task> tasks = asList(
+                out -> out.write("a".getBytes()),
+                OrderedParallelSearch.deferred(() -> asList(
+                        out -> out.write("b".getBytes()),
+                        OrderedParallelSearch.deferred(() -> asList(out -> out.write("c".getBytes()))))),
+                out -> out.write("d".getBytes()));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // when
+        search.execute(tasks, outputStream);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("abcd"));
+    }
+
+    @Test
+    public void shouldRunTasksNotPickedUpByAnyThreadWhenWritingOutput() throws Exception {
+        // given a single thread that runs a later task, which waits for buffer space
+        OrderedParallelSearch search = new OrderedParallelSearch(1, 0);
+        List<OrderedParallelSearch.Task> tasks = asList(
+                OrderedParallelSearch.deferred(() -> {
+                    pause(100);
+                    return asList(out -> out.write("first".getBytes()));
+                }),
+                out -> out.write("second".getBytes()));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // when
+        search.execute(tasks, outputStream);
+
+        // then
+        assertThat(new String(outputStream.toByteArray()), is("firstsecond"));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldPropagateTaskError() throws Exception {
+        new OrderedParallelSearch(2, 1024).execute(asList(
+                out -> out.write("ok".getBytes()),
+                out -> {
+                    throw new IOException("broken");
+                }), new ByteArrayOutputStream());
+    }
+
+    private static void pause(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import org.apache.catalina.ssi.ByteArrayServletOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ResponseCompressionTest {
+
+    private final HttpServletResponse response = mock(HttpServletResponse.class);
+
+    @Test
+    public void shouldPreferGzip() {
+        assertThat(new ResponseCompression(6).negotiate("deflate, gzip", response), is("gzip"));
+        assertThat(new ResponseCompression(6).negotiate("*", response), is("gzip"));
+    }
+
+    @Test
+    public void shouldRankByQuality() {
+        assertThat(new ResponseCompression(6).negotiate("deflate, gzip;q=0.5", response), is("deflate"));
+        assertThat(new ResponseCompression(6).negotiate("gzip;q=0.2, *;q=0.8", response), is("deflate"));
+        assertThat(new ResponseCompression(6).negotiate("identity, gzip;q=0.5", response), is(nullValue()));
+    }
+
+    @Test
+    public void shouldNotSelectRefusedCodingForWildcard() {
+        assertThat(new ResponseCompression(6).negotiate("gzip;q=0, *", response), is("deflate"));
+        assertThat(new ResponseCompression(6).negotiate("gzip;q=0, deflate;q=0, *", response), is(nullValue()));
+    }
+
+    @Test
+    public void shouldUseDeflateIfGzipIsNotAccepted() {
+        assertThat(new ResponseCompression(6).negotiate("gzip;q=0, deflate", response), is("deflate"));
+    }
+
+    @Test
+    public void shouldNotCompressWithoutAcceptedEncoding() {
+        assertThat(new ResponseCompression(6).negotiate(null, response), is(nullValue()));
+        assertThat(new ResponseCompression(6).negotiate("br, identity", response), is(nullValue()));
+    }
+
+    @Test
+    public void shouldSetContentEncodingOnFirstWrite() throws Exception {
+        // given
+        ByteArrayServletOutputStream content = new ByteArrayServletOutputStream();
+        when(response.getOutputStream()).thenReturn(content);
+
+        // when
+        OutputStream outputStream = new ResponseCompression(6).compress("gzip", response);
+        verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+        outputStream.write("content".getBytes(StandardCharsets.UTF_8));
+        outputStream.close();
+
+        // then
+        verify(response).setHeader("Content-Encoding", "gzip");
+        assertThat(IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(content.toByteArray())), "UTF-8"),
+                is("content"));
+    }
+
+    @Test
+    public void shouldNotSetContentEncodingIfNothingWasWritten() throws Exception {
+        // when
+        new ResponseCompression(6).compress("gzip", response).close();
+
+        // then
+        verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+        verify(response, never()).getOutputStream();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectLevelAboveNine() {
+        new ResponseCompression(10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNegativeLevel() {
+        new ResponseCompression(-2);
+    }
+
+    @Test
+    public void shouldNotCompressWhenDisabled() {
+        assertThat(new ResponseCompression(0).negotiate("gzip", response), is(nullValue()));
+    }
+}
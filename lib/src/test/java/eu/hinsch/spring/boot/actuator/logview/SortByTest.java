@@ -0,0 +1,68 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SortByTest {
+
+    @Test
+    public void shouldSelectFirstEntries() {
+        // given
+        List<FileEntry> entries = entries(500);
+
+        // when
+        List<FileEntry> first = SortBy.SIZE.first(entries, false, 3);
+
+        // then
+        assertThat(sizes(first), contains(0L, 1L, 2L));
+    }
+
+    @Test
+    public void shouldSelectFirstEntriesDescending() {
+        // given
+        List<FileEntry> entries = entries(500);
+
+        // when
+        List<FileEntry> first = SortBy.SIZE.first(entries, true, 3);
+
+        // then
+        assertThat(sizes(first), contains(499L, 498L, 497L));
+    }
+
+    @Test
+    public void shouldSortAllEntriesIfFewer() {
+        // given
+        List<FileEntry> entries = entries(3);
+
+        // when
+        List<FileEntry> first = SortBy.SIZE.first(entries, false, 10);
+
+        // then
+        assertThat(sizes(first), contains(0L, 1L, 2L));
+        assertThat(SortBy.SIZE.first(entries, false, 0), is(empty()));
+    }
+
+    private static List<FileEntry> entries(int count) {
+        List<FileEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            FileEntry entry = new FileEntry();
+            entry.setSize(i);
+            entries.add(entry);
+        }
+        Collections.shuffle(entries);
+        return entries;
+    }
+
+    private static List<Long> sizes(List<FileEntry> entries) {
+        return entries.stream().map(FileEntry::getSize).collect(toList());
+    }
+}
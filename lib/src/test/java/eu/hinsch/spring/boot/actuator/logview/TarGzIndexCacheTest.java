@@ -0,0 +1,104 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class TarGzIndexCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final TarGzIndexCache cache = new TarGzIndexCache(2);
+
+    @Test
+    public void shouldReuseIndex() throws Exception {
+        // given
+        Path archive = createTarGzArchive("a.tar.gz", "content");
+
+        // when
+        TarGzIndex first = cache.get(archive);
+        TarGzIndex second = cache.get(archive);
+
+        // then
+        assertThat(second, sameInstance(first));
+        assertThat(cache.getStatistics().get("hits"), is(1L));
+        assertThat(cache.getStatistics().get("misses"), is(1L));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsed() throws Exception {
+        // given
+        Path a = createTarGzArchive("a.tar.gz", "a");
+        Path b = createTarGzArchive("b.tar.gz", "b");
+        Path c = createTarGzArchive("c.tar.gz", "c");
+        cache.get(a);
+        cache.get(b);
+        cache.get(a);
+
+        // when
+        cache.get(c);
+
+        // then b was evicted, a is still cached
+        assertThat(cache.getStatistics().get("evictions"), is(1L));
+        assertThat(cache.getStatistics().get("indexes"), is(2));
+        cache.get(a);
+        assertThat(cache.getStatistics().get("hits"), is(2L));
+    }
+
+    @Test
+    public void shouldIndexReplacedArchiveOfSameSizeAndModificationTime() throws Exception {
+        // given
+        Path archive = createTarGzArchive("a.tar.gz", "content a");
+        TarGzIndex old = cache.get(archive);
+
+        // when replaced by another file, like a rotation moving a new archive in place
+        Path replacement = createTarGzArchive("replacement.tar.gz", "content b");
+        Files.setLastModifiedTime(replacement, Files.getLastModifiedTime(archive));
+        assertThat(Files.size(replacement), is(Files.size(archive)));
+        Files.move(replacement, archive, StandardCopyOption.REPLACE_EXISTING);
+
+        // then
+        TarGzIndex index = cache.get(archive);
+        assertThat(index, not(sameInstance(old)));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        index.streamEntry(archive, "A.log", outputStream);
+        assertThat(new String(outputStream.toByteArray(), StandardCharsets.UTF_8), is("content b"));
+    }
+
+    private Path createTarGzArchive(String archiveFileName, String content) throws IOException {
+        Path archive = temporaryFolder.getRoot().toPath().resolve(archiveFileName);
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        // stored without compression, so archives with contents of the same length have the same size
+        try (TarArchiveOutputStream tarStream = new TarArchiveOutputStream(new GZIPOutputStream(
+                new FileOutputStream(archive.toFile())) {
+            {
+                def.setLevel(Deflater.NO_COMPRESSION);
+            }
+        })) {
+            TarArchiveEntry entry = new TarArchiveEntry("A.log");
+            entry.setSize(bytes.length);
+            tarStream.putArchiveEntry(entry);
+            tarStream.write(bytes);
+            tarStream.closeArchiveEntry();
+        }
+        return archive;
+    }
+}
@@ -0,0 +1,95 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class TarGzIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldStreamEntriesOfSingleMemberArchive() throws Exception {
+        // given
+        Path archive = temporaryFolder.newFile("logs.tar.gz").toPath();
+        byte[] tar = tar(content("a", 1000), content("b", 50000), content("c", 10));
+        try (OutputStream outputStream = new GZIPOutputStream(new FileOutputStream(archive.toFile()))) {
+            outputStream.write(tar);
+        }
+
+        // when
+        TarGzIndex index = TarGzIndex.build(archive);
+
+        // then
+        assertThat(index.getAccessPoints(), is(1));
+        assertThat(entry(index, archive, "b.log"), is(content("b", 50000)));
+        assertThat(entry(index, archive, "c.log"), is(content("c", 10)));
+        assertThat(entry(index, archive, "missing.log"), is(""));
+    }
+
+    @Test
+    public void shouldStartAtMembersOfMultiMemberArchive() throws Exception {
+        // given an archive compressed in independent members of 256KB, like written by bgzip
+        Path archive = temporaryFolder.newFile("logs.tar.gz").toPath();
+        byte[] tar = tar(content("a", 100000), content("b", 100000), content("c", 100000));
+        try (OutputStream outputStream = new FileOutputStream(archive.toFile())) {
+            for (int offset = 0; offset < tar.length; offset += 256 * 1024) {
+                GZIPOutputStream member = new GZIPOutputStream(outputStream);
+                member.write(tar, offset, Math.min(256 * 1024, tar.length - offset));
+                member.finish();
+            }
+        }
+
+        // when
+        TarGzIndex index = TarGzIndex.build(archive);
+
+        // then
+        assertThat(index.getAccessPoints(), greaterThan(1));
+        assertThat(entry(index, archive, "a.log"), is(content("a", 100000)));
+        assertThat(entry(index, archive, "c.log"), is(content("c", 100000)));
+    }
+
+    private static String entry(TarGzIndex index, Path archive, String name) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        index.streamEntry(archive, name, outputStream);
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String content(String name, int lines) {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            content.append(name).append(" line ").append(i).append('\n');
+        }
+        return content.toString();
+    }
+
+    private static byte[] tar(String... contents) throws IOException {
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tarStream = new TarArchiveOutputStream(tar)) {
+            for (String content : contents) {
+                byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+                TarArchiveEntry entry = new TarArchiveEntry(content.substring(0, 1) + ".log");
+                entry.setSize(bytes.length);
+                tarStream.putArchiveEntry(entry);
+                tarStream.write(bytes);
+                tarStream.closeArchiveEntry();
+            }
+        }
+        return tar.toByteArray();
+    }
+}
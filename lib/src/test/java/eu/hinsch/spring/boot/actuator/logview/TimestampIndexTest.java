@@ -0,0 +1,118 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class TimestampIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final TimestampIndex index = new TimestampIndex();
+
+    @Test
+    public void shouldParseTimestamps() {
+        assertThat(timestamp("2015-01-20 14:02:03.123  INFO 1 --- [main] Application"), is(20150120140203123L));
+        assertThat(timestamp("2015-01-20T14:02:03,123 x"), is(20150120140203123L));
+        assertThat(timestamp("\tat com.example.Foo(Foo.java:12)"), is(-1L));
+        assertThat(timestamp("2015-01-20 14:02"), is(-1L));
+    }
+
+    @Test
+    public void shouldFindWindowInLargeFile() throws Exception {
+        // given one line per second over more than a few sample intervals, with stack traces in between
+        Path file = temporaryFolder.newFile().toPath();
+        long[] offsets = writeLog(file, 0, 36000);
+
+        // when
+        TrigramIndex.Range window = index.window(file, new TimeRange("2015-01-20 02:00", "2015-01-20 02:00:05"));
+
+        // then
+        assertThat(window.getOffset(), is(offsets[7200]));
+        assertThat(window.getLength(), is(offsets[7205] - offsets[7200]));
+    }
+
+    @Test
+    public void shouldLeaveWindowOpenWithoutEnd() throws Exception {
+        // given
+        Path file = temporaryFolder.newFile().toPath();
+        long[] offsets = writeLog(file, 0, 100);
+
+        // when
+        TrigramIndex.Range window = index.window(file, new TimeRange("2015-01-20 00:01:00.500", null));
+
+        // then
+        assertThat(window.getOffset(), is(offsets[61]));
+        assertThat(window.getLength(), is(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void shouldReturnEmptyWindowOutsideOfFile() throws Exception {
+        // given
+        Path file = temporaryFolder.newFile().toPath();
+        writeLog(file, 0, 100);
+
+        // when
+        TrigramIndex.Range window = index.window(file, new TimeRange("2015-01-21 00:00", "2015-01-22 00:00"));
+
+        // then
+        assertThat(window.getOffset(), is(Files.size(file)));
+        assertThat(window.getLength(), is(0L));
+    }
+
+    @Test
+    public void shouldSampleAppendedContent() throws Exception {
+        // given
+        Path file = temporaryFolder.newFile().toPath();
+        writeLog(file, 0, 20000);
+        index.window(file, new TimeRange("2015-01-20 01:00", null));
+
+        // when
+        long[] offsets = writeLog(file, 20000, 40000);
+        TrigramIndex.Range window = index.window(file, new TimeRange("2015-01-20 10:00", "2015-01-20 10:00:01"));
+
+        // then
+        assertThat(window.getOffset(), is(offsets[36000 - 20000]));
+        assertThat(window.getLength(), is(offsets[36001 - 20000] - offsets[36000 - 20000]));
+    }
+
+    private static long timestamp(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return TimestampIndex.timestamp(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    /**
+     * Appends lines for seconds {@code from} to {@code to} (exclusive) of 2015-01-20.
+     *
+     * @return offsets of the written lines, relative to {@code from}
+     */
+    private static long[] writeLog(Path file, int from, int to) throws IOException {
+        long[] offsets = new long[to - from];
+        long offset = Files.size(file);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+            for (int second = from; second < to; second++) {
+                offsets[second - from] = offset;
+                String line = String.format("2015-01-20 %02d:%02d:%02d.000  INFO 1 --- [main] message %d%n",
+                        second / 3600, second / 60 % 60, second % 60, second);
+                if (second % 10 == 0) {
+                    line += "java.lang.IllegalStateException: failed\n\tat com.example.Foo.bar(Foo.java:12)\n";
+                }
+                writer.write(line);
+                offset += line.length();
+            }
+        }
+        return offsets;
+    }
+}
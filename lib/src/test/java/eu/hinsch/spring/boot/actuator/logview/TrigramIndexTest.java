@@ -0,0 +1,95 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class TrigramIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private TrigramIndex index;
+    private Path logFile;
+
+    @Before
+    public void setUp() throws Exception {
+        index = new TrigramIndex(temporaryFolder.newFolder("index").toPath());
+        logFile = temporaryFolder.getRoot().toPath().resolve("app.log");
+    }
+
+    @Test
+    public void shouldOnlyReturnBlocksContainingTerm() throws Exception {
+        // given
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            content.append(i == 15000 ? "needle in a haystack" : "hay " + i).append('\n');
+        }
+        Files.write(logFile, content.toString().getBytes());
+
+        // when
+        List<TrigramIndex.Range> ranges = index.candidates(logFile, "needle".getBytes());
+
+        // then
+        assertThat(ranges, hasSize(1));
+        TrigramIndex.Range range = ranges.get(0);
+        assertThat(range.getLength(), lessThan((long) 2 * TrigramIndex.BLOCK_SIZE));
+        String block = new String(Files.readAllBytes(logFile), (int) range.getOffset(), (int) range.getLength());
+        assertThat(block.contains("needle"), is(true));
+    }
+
+    @Test
+    public void shouldIncludeAppendedContent() throws Exception {
+        // given
+        Files.write(logFile, "first line\npartial".getBytes());
+        index.candidates(logFile, "nothing".getBytes());
+
+        // when
+        Files.write(logFile, " line\nsecond needle\n".getBytes(), StandardOpenOption.APPEND);
+        List<TrigramIndex.Range> ranges = index.candidates(logFile, "needle".getBytes());
+
+        // then
+        assertThat(ranges, hasSize(1));
+        assertThat(ranges.get(0).getOffset() + ranges.get(0).getLength(), is(Files.size(logFile)));
+    }
+
+    @Test
+    public void shouldRebuildIndexForTruncatedFile() throws Exception {
+        // given
+        Files.write(logFile, "old content\nold content\n".getBytes());
+        index.candidates(logFile, "content".getBytes());
+
+        // when
+        Files.write(logFile, "new\n".getBytes());
+        List<TrigramIndex.Range> ranges = index.candidates(logFile, "content".getBytes());
+
+        // then
+        assertThat(ranges, hasSize(0));
+    }
+
+    @Test
+    public void shouldReportStatistics() throws Exception {
+        // given
+        Files.write(logFile, "some content\n".getBytes());
+
+        // when
+        index.candidates(logFile, "content".getBytes());
+
+        // then
+        assertThat(index.getStatistics().get("indexFiles"), is(1));
+        assertThat((Long) index.getStatistics().get("indexedBytes"), is(13L));
+        assertThat((Long) index.getStatistics().get("indexSizeBytes"), greaterThan(0L));
+    }
+}
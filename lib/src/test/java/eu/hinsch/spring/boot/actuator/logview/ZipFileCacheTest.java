@@ -0,0 +1,111 @@
+package eu.hinsch.spring.boot.actuator.logview;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ZipFileCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final ZipFileCache cache = new ZipFileCache(2);
+
+    @Test
+    public void shouldReuseOpenZipFile() throws Exception {
+        // given
+        Path archive = createZipArchive("a.zip", "content");
+
+        // when
+        try (ZipFileCache.Handle first = cache.open(archive);
+             ZipFileCache.Handle second = cache.open(archive)) {
+
+            // then
+            assertThat(second.getZipFile(), sameInstance(first.getZipFile()));
+        }
+        assertThat(cache.getStatistics().get("hits"), is(1L));
+        assertThat(cache.getStatistics().get("misses"), is(1L));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsed() throws Exception {
+        // given
+        Path a = createZipArchive("a.zip", "a");
+        Path b = createZipArchive("b.zip", "b");
+        Path c = createZipArchive("c.zip", "c");
+        cache.open(a).close();
+        cache.open(b).close();
+        cache.open(a).close();
+
+        // when
+        cache.open(c).close();
+
+        // then b was evicted, a is still open
+        assertThat(cache.getStatistics().get("evictions"), is(1L));
+        assertThat(cache.getStatistics().get("openFiles"), is(2));
+        cache.open(a).close();
+        assertThat(cache.getStatistics().get("hits"), is(2L));
+    }
+
+    @Test
+    public void shouldKeepEvictedZipFileOpenWhileInUse() throws Exception {
+        // given
+        Path a = createZipArchive("a.zip", "content");
+        Path b = createZipArchive("b.zip", "b");
+        Path c = createZipArchive("c.zip", "c");
+
+        try (ZipFileCache.Handle handle = cache.open(a);
+             InputStream inputStream = handle.getZipFile().getInputStream(handle.getZipFile().getEntry("A.log"))) {
+            // when
+            cache.open(b).close();
+            cache.open(c).close();
+
+            // then
+            assertThat(cache.getStatistics().get("evictions"), is(1L));
+            assertThat(IOUtils.toString(inputStream), is("content"));
+        }
+    }
+
+    @Test
+    public void shouldReopenChangedArchive() throws Exception {
+        // given
+        Path archive = createZipArchive("a.zip", "old");
+        ZipFileCache.Handle old = cache.open(archive);
+
+        // when
+        createZipArchive("a.zip", "new");
+        Files.setLastModifiedTime(archive, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+
+        // then
+        try (ZipFileCache.Handle handle = cache.open(archive);
+             InputStream inputStream = handle.getZipFile().getInputStream(handle.getZipFile().getEntry("A.log"))) {
+            assertThat(handle.getZipFile(), not(sameInstance(old.getZipFile())));
+            assertThat(IOUtils.toString(inputStream), is("new"));
+        }
+        old.close();
+    }
+
+    private Path createZipArchive(String archiveFileName, String content) throws IOException {
+        Path archive = temporaryFolder.getRoot().toPath().resolve(archiveFileName);
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(archive.toFile()))) {
+            zos.putNextEntry(new ZipEntry("A.log"));
+            IOUtils.write(content, zos);
+        }
+        return archive;
+    }
+}